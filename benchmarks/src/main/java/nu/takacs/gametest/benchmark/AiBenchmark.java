@@ -0,0 +1,90 @@
+package nu.takacs.gametest.benchmark;
+
+import com.jme3.anim.AnimClip;
+import com.jme3.anim.AnimComposer;
+import com.jme3.anim.AnimTrack;
+import com.jme3.scene.Node;
+import nu.takacs.gametest.ai.AiSystemState;
+import nu.takacs.gametest.control.AiControl;
+import nu.takacs.gametest.control.NpcCharacterControl;
+import nu.takacs.gametest.time.GameTimerState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wandering NPCs: the AI system pass on its own, and a whole logical frame that
+ * also updates the scene graph. The NPCs have a character control and an animation composer
+ * like the real ones, but an empty model and no physics space.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AiBenchmark {
+
+    private static final float TPF = 1.0f / 60.0f;
+
+    @Param({"100", "1000", "5000"})
+    public int npcCount;
+
+    private Node rootNode;
+    private GameTimerState timers;
+    private AiSystemState aiSystem;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        HeadlessApplication.loadBullet();
+
+        rootNode = new Node("root");
+        timers = new GameTimerState();
+        aiSystem = new AiSystemState(timers, 1L);
+
+        for (int i = 0; i < npcCount; ++i) {
+            final var npcModel = new Node("npcModel");
+            final var animComposer = new AnimComposer();
+            animComposer.addAnimClip(emptyClip("Walk"));
+            animComposer.addAnimClip(emptyClip("stand"));
+            npcModel.addControl(animComposer);
+
+            final var npcSpatial = new Node("npcNode");
+            npcSpatial.attachChild(npcModel);
+            npcSpatial.addControl(new NpcCharacterControl(1.0f, 2f, 50f));
+            npcSpatial.addControl(new AiControl(aiSystem));
+
+            rootNode.attachChild(npcSpatial);
+        }
+    }
+
+    @Benchmark
+    public void aiPass() {
+        timers.update(TPF);
+        aiSystem.update(TPF);
+    }
+
+    @Benchmark
+    public void frame() {
+        timers.update(TPF);
+        aiSystem.update(TPF);
+        rootNode.updateLogicalState(TPF);
+    }
+
+    private static AnimClip emptyClip(final String name) {
+        final var clip = new AnimClip(name);
+        clip.setTracks(new AnimTrack<?>[0]);
+        return clip;
+    }
+}
@@ -0,0 +1,235 @@
+package nu.takacs.gametest.benchmark;
+
+import com.jme3.anim.AnimClip;
+import com.jme3.anim.AnimComposer;
+import com.jme3.anim.AnimTrack;
+import com.jme3.app.ResetStatsState;
+import com.jme3.app.state.AppStateManager;
+import com.jme3.bullet.BulletAppState;
+import com.jme3.bullet.collision.shapes.PlaneCollisionShape;
+import com.jme3.bullet.control.RigidBodyControl;
+import com.jme3.bullet.objects.PhysicsRigidBody;
+import com.jme3.math.Plane;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.shape.Box;
+import nu.takacs.gametest.ai.AiSystemState;
+import nu.takacs.gametest.anim.AnimationLodState;
+import nu.takacs.gametest.control.AiControl;
+import nu.takacs.gametest.control.HealthDestructionControl;
+import nu.takacs.gametest.control.NpcCharacterControl;
+import nu.takacs.gametest.entity.DamageQueue;
+import nu.takacs.gametest.entity.EntityRegistry;
+import nu.takacs.gametest.entity.RelevanceState;
+import nu.takacs.gametest.factory.BoxFactory;
+import nu.takacs.gametest.factory.NpcFactory;
+import nu.takacs.gametest.particle.FireParticleState;
+import nu.takacs.gametest.physics.ExplosionForce;
+import nu.takacs.gametest.save.EntityType;
+import nu.takacs.gametest.time.GameTimerState;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Fails when the per-frame gameplay paths allocate more than a fixed budget.
+ * <p>
+ * Plays a scripted scene headless, at two sizes, with the states the game attaches and
+ * the frame order of {@code SimpleApplication}: states, then the scene's logical and
+ * geometric update, then the physics step. The scene has burning, instanced boxes from
+ * the game's {@link BoxFactory}, wandering NPCs with animation LOD, and a grenade blast
+ * every few frames, with the camera in the middle so that some entities go dormant.
+ * After a warm-up it counts the bytes the thread allocated per frame. The budget is the
+ * same for both sizes, so allocations that grow with the number of entities fail it too.
+ * <p>
+ * Physics steps on the measured thread rather than alongside the frame as in the game,
+ * so the blasts, which run on physics ticks, are counted, and the fire particles step
+ * serially. The NPCs have no skeleton, as the game's model is only in the test data.
+ * <p>
+ * The benchmarks build runs it on {@code mvn verify}, which fails when it exits with
+ * status 1. It needs the game's assets on the class path. The budget can be changed with
+ * {@code -Dgametest.allocationBudget=<bytes per frame>}.
+ */
+public final class AllocationGate {
+
+    private static final float TPF = 1.0f / 60.0f;
+    private static final float CUTOFF = 40.0f;
+    private static final float FORCE_SIZE = 2500.0f;
+    private static final float AREA_PER_BOX = 100.0f;
+    private static final float WAKE_RADIUS = 160.0f;
+    private static final float SLEEP_RADIUS = 200.0f;
+    private static final float SLEEP_DELAY = 2.0f;
+    private static final float ANIMATION_NEAR_DISTANCE = 30.0f;
+    private static final float ANIMATION_FAR_DISTANCE = 120.0f;
+    private static final int ANIMATION_REDUCED_INTERVAL = 4;
+    private static final int BLAST_INTERVAL = 10;
+    private static final int WARMUP_FRAMES = 3000;
+    private static final int MEASURED_FRAMES = 2000;
+    private static final long BUDGET_BYTES_PER_FRAME = Long.getLong("gametest.allocationBudget", 512L);
+
+    private static final int[][] SIZES = {
+            // boxes, NPCs
+            {500, 50},
+            {5000, 500},
+    };
+
+    private final HeadlessApplication application = new HeadlessApplication();
+    private final AppStateManager stateManager = application.getStateManager();
+    private final Node rootNode = application.getRootNode();
+    private final GameTimerState timers = new GameTimerState();
+    private final EntityRegistry entities = new EntityRegistry(timers, CUTOFF);
+    private final DamageQueue damageQueue = new DamageQueue(entities, Long.MAX_VALUE);
+    private final RelevanceState relevance;
+    private final AiSystemState aiSystem = new AiSystemState(timers, 1L);
+    private final AnimationLodState animationLod = new AnimationLodState(ANIMATION_NEAR_DISTANCE,
+            ANIMATION_FAR_DISTANCE, ANIMATION_REDUCED_INTERVAL);
+    private final BulletAppState bulletAppState = new BulletAppState();
+    private final ExplosionForce explosionForce = new ExplosionForce(entities, damageQueue, CUTOFF, FORCE_SIZE);
+    private final FireParticleState fires = new FireParticleState(application);
+    private final BoxFactory boxFactory = new BoxFactory(application, fires, entities);
+
+    private final HealthDestructionControl[] healthControls;
+    private final Vector3f[] blasts = new Vector3f[64];
+    private int frame = 0;
+
+    private AllocationGate(final int boxCount, final int npcCount) {
+        final var random = new Random(42);
+        final float side = (float) Math.sqrt(boxCount * AREA_PER_BOX);
+
+        // boxes are never evicted, so the scene stays the same size
+        relevance = new RelevanceState(entities, timers, WAKE_RADIUS, SLEEP_RADIUS, SLEEP_DELAY,
+                Integer.MAX_VALUE, id -> {});
+
+        // there is no renderer for it to reset the stats of
+        stateManager.detach(stateManager.getState(ResetStatsState.class));
+        stateManager.attach(timers);
+        stateManager.attach(entities);
+        stateManager.attach(damageQueue);
+        stateManager.attach(relevance);
+        stateManager.attach(aiSystem);
+        stateManager.attach(animationLod);
+        stateManager.attach(bulletAppState);
+        stateManager.attach(fires);
+        // its fork-join tasks are a fixed cost, and how many of them this thread makes varies
+        fires.setParallel(false);
+
+        final var space = bulletAppState.getPhysicsSpace();
+        space.addTickListener(explosionForce);
+        space.add(new PhysicsRigidBody(new PlaneCollisionShape(new Plane(Vector3f.UNIT_Y, 0.0f)), 0.0f));
+
+        rootNode.attachChild(fires.getGeometry());
+        rootNode.attachChild(boxFactory.getInstancedNode());
+        application.getCamera().setLocation(new Vector3f(side / 2.0f, 10.0f, side / 2.0f));
+
+        healthControls = new HealthDestructionControl[boxCount];
+
+        for (int i = 0; i < boxCount; ++i) {
+            // no box is ever destroyed, so the scene stays the same size
+            final Spatial box = boxFactory.createBox(spatial -> {});
+
+            final var body = box.getControl(RigidBodyControl.class);
+            body.setPhysicsLocation(new Vector3f(
+                    random.nextFloat() * side, 1.0f + random.nextFloat() * 10.0f, random.nextFloat() * side));
+            space.add(body);
+
+            boxFactory.getInstancedNode().attachChild(box);
+            healthControls[i] = box.getControl(HealthDestructionControl.class);
+        }
+
+        final var mesh = new Box(1.0f, 1.0f, 1.0f);
+
+        for (int i = 0; i < npcCount; ++i) {
+            final var npcModel = new Node(NpcFactory.MODEL_NAME);
+            npcModel.attachChild(new Geometry("npcGeometry", mesh));
+            final var animComposer = new AnimComposer();
+            animComposer.addAnimClip(emptyClip("Walk"));
+            animComposer.addAnimClip(emptyClip("stand"));
+            npcModel.addControl(animComposer);
+
+            final var npcSpatial = new Node("npcNode");
+            npcSpatial.attachChild(npcModel);
+
+            final var character = new NpcCharacterControl(1.0f, 2f, 50f);
+            npcSpatial.addControl(character);
+            entities.create(EntityType.NPC, npcSpatial, character.getRigidBody());
+
+            space.add(character);
+            npcSpatial.addControl(new AiControl(aiSystem, entities));
+            animationLod.register(npcSpatial, npcModel);
+
+            character.warp(new Vector3f(random.nextFloat() * side, 1.0f, random.nextFloat() * side));
+            rootNode.attachChild(npcSpatial);
+        }
+
+        for (int i = 0; i < blasts.length; ++i) {
+            blasts[i] = new Vector3f(random.nextFloat() * side, 0.0f, random.nextFloat() * side);
+        }
+    }
+
+    private void frame() {
+        if (frame % BLAST_INTERVAL == 0) {
+            applyExplosionForce(blasts[(frame / BLAST_INTERVAL) % blasts.length]);
+        }
+
+        // heal the boxes before they blow up
+        for (final var healthControl : healthControls) {
+            if (healthControl.getHealth() < BoxFactory.MAX_HEALTH / 2) {
+                healthControl.setHealth(BoxFactory.MAX_HEALTH);
+            }
+        }
+
+        stateManager.update(TPF);
+        rootNode.updateLogicalState(TPF);
+        rootNode.updateGeometricState();
+        // steps the physics; nothing is drawn
+        stateManager.render(application.getRenderManager());
+        stateManager.postRender();
+
+        ++frame;
+    }
+
+    private void applyExplosionForce(final Vector3f translation) {
+        relevance.wakeAround(translation, explosionForce.getCutoff());
+        explosionForce.apply(translation);
+    }
+
+    private static AnimClip emptyClip(final String name) {
+        final var clip = new AnimClip(name);
+        clip.setTracks(new AnimTrack<?>[0]);
+        return clip;
+    }
+
+    public static void main(final String[] args) {
+        HeadlessApplication.loadBullet();
+
+        final var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+        boolean failed = false;
+
+        for (final int[] size : SIZES) {
+            final var gate = new AllocationGate(size[0], size[1]);
+
+            for (int i = 0; i < WARMUP_FRAMES; ++i) {
+                gate.frame();
+            }
+
+            final long before = threads.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < MEASURED_FRAMES; ++i) {
+                gate.frame();
+            }
+            final long bytesPerFrame = (threads.getThreadAllocatedBytes(threadId) - before) / MEASURED_FRAMES;
+
+            final boolean over = bytesPerFrame > BUDGET_BYTES_PER_FRAME;
+            failed |= over;
+
+            System.out.printf("%5d boxes, %4d NPCs: %6d bytes/frame (budget %d)%s%n",
+                    size[0], size[1], bytesPerFrame, BUDGET_BYTES_PER_FRAME, over ? "  OVER BUDGET" : "");
+
+            gate.stateManager.cleanup();
+        }
+
+        System.exit(failed ? 1 : 0);
+    }
+}
@@ -0,0 +1,136 @@
+package nu.takacs.gametest.benchmark;
+
+import com.jme3.bullet.PhysicsSpace;
+import com.jme3.bullet.collision.shapes.BoxCollisionShape;
+import com.jme3.bullet.control.RigidBodyControl;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import nu.takacs.gametest.control.HealthDestructionControl;
+import nu.takacs.gametest.entity.DamageQueue;
+import nu.takacs.gametest.entity.EntityRegistry;
+import nu.takacs.gametest.physics.ExplosionForce;
+import nu.takacs.gametest.save.EntityType;
+import nu.takacs.gametest.time.GameTimerState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Frame times of a chain reaction through a dense pile of boxes that all blow up at
+ * the first hit. Every invocation is one frame: a physics tick's blasts, then damage
+ * resolution and detonations, each of which takes its box
+ * out of the physics space and queues a blast. Once the pile is gone a new one is
+ * built, outside the measurement.
+ * <p>
+ * Compare the worst frames ({@code p0.999}, {@code p1.00}) of an unlimited and a
+ * limited detonation budget.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChainReactionBenchmark {
+
+    private static final float CUTOFF = 40.0f;
+    private static final float FORCE_SIZE = 2500.0f;
+    private static final float SPACING = 2.5f;
+    private static final float TIME_STEP = 1.0f / 60.0f;
+
+    @Param({"8000"})
+    public int boxCount;
+
+    // for detonations and blasts each; the unlimited budget is about 30 years
+    @Param({"2000", "1000000000000"})
+    public long budgetMicros;
+
+    private final Vector3f location = new Vector3f();
+
+    private BoxCollisionShape shape;
+    private PhysicsSpace space;
+    private EntityRegistry entities;
+    private DamageQueue damageQueue;
+    private ExplosionForce explosionForce;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        HeadlessApplication.loadBullet();
+        shape = new BoxCollisionShape(new Vector3f(1.0f, 1.0f, 1.0f));
+    }
+
+    @Setup(Level.Invocation)
+    public void buildPile() {
+        if (entities != null && entities.getCount() > 0) {
+            return;
+        }
+
+        if (space != null) {
+            space.destroy();
+        }
+
+        space = new PhysicsSpace();
+        entities = new EntityRegistry(new GameTimerState(), CUTOFF);
+        damageQueue = new DamageQueue(entities, budgetMicros * 1000L);
+        explosionForce = new ExplosionForce(entities, damageQueue, CUTOFF, FORCE_SIZE);
+        explosionForce.setBudgetNanos(budgetMicros * 1000L);
+
+        final int side = (int) Math.ceil(Math.cbrt(boxCount));
+
+        for (int i = 0; i < boxCount; ++i) {
+            final var box = new Node("BoxNode");
+
+            final var healthControl = new HealthDestructionControl(this::detonated);
+            box.addControl(healthControl);
+            healthControl.setHealth(1);
+
+            final var body = new RigidBodyControl(shape, 100.0f);
+            box.addControl(body);
+            body.setPhysicsLocation(new Vector3f(
+                    i % side * SPACING, i / side % side * SPACING, i / (side * side) * SPACING));
+
+            space.add(body);
+            entities.attachHealth(entities.create(EntityType.BOX, box, body), healthControl);
+        }
+
+        entities.update(TIME_STEP);
+
+        // set off the first box
+        damageQueue.detonate(entities.getId(0));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        space.destroy();
+    }
+
+    private void detonated(final Spatial box) {
+        final var body = box.getControl(RigidBodyControl.class);
+
+        space.remove(body);
+        explosionForce.apply(body.getPhysicsLocation(location));
+        entities.destroy(EntityRegistry.idOf(box));
+    }
+
+    @Benchmark
+    public int frame() {
+        explosionForce.prePhysicsTick(space, TIME_STEP);
+        entities.update(TIME_STEP);
+        damageQueue.update(TIME_STEP);
+
+        return damageQueue.getLastDetonatedCount();
+    }
+}
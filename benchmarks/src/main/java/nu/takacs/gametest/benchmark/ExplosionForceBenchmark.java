@@ -0,0 +1,111 @@
+package nu.takacs.gametest.benchmark;
+
+import com.jme3.bullet.PhysicsSpace;
+import com.jme3.bullet.collision.shapes.BoxCollisionShape;
+import com.jme3.bullet.control.RigidBodyControl;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Node;
+import nu.takacs.gametest.control.HealthDestructionControl;
+import nu.takacs.gametest.entity.DamageQueue;
+import nu.takacs.gametest.entity.EntityRegistry;
+import nu.takacs.gametest.physics.ExplosionForce;
+import nu.takacs.gametest.save.EntityType;
+import nu.takacs.gametest.time.GameTimerState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One grenade blast against a physics space full of boxes, spread at a constant
+ * density so the number of boxes inside the blast radius stays about the same.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExplosionForceBenchmark {
+
+    private static final float CUTOFF = 40.0f;
+    private static final float FORCE_SIZE = 2500.0f;
+    private static final float AREA_PER_BODY = 100.0f;
+    private static final int BLASTS = 1024;
+    private static final float TIME_STEP = 1.0f / 60.0f;
+
+    @Param({"100", "1000", "10000", "50000"})
+    public int bodyCount;
+
+    private PhysicsSpace space;
+    private ExplosionForce explosionForce;
+    private DamageQueue damageQueue;
+    private Vector3f[] blasts;
+    private int blast;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        HeadlessApplication.loadBullet();
+
+        final var random = new Random(42);
+        final float side = (float) Math.sqrt(bodyCount * AREA_PER_BODY);
+        final var shape = new BoxCollisionShape(new Vector3f(1.0f, 1.0f, 1.0f));
+
+        space = new PhysicsSpace();
+        final var entities = new EntityRegistry(new GameTimerState(), CUTOFF);
+        damageQueue = new DamageQueue(entities, Long.MAX_VALUE);
+        explosionForce = new ExplosionForce(entities, damageQueue, CUTOFF, FORCE_SIZE);
+
+        for (int i = 0; i < bodyCount; ++i) {
+            final var box = new Node("BoxNode");
+            final var healthControl = new HealthDestructionControl(spatial -> {});
+            box.addControl(healthControl);
+
+            final var body = new RigidBodyControl(shape, 100.0f);
+            box.addControl(body);
+            body.setPhysicsLocation(new Vector3f(
+                    random.nextFloat() * side, random.nextFloat() * 20.0f, random.nextFloat() * side));
+
+            space.add(body);
+            entities.attachHealth(entities.create(EntityType.BOX, box, body), healthControl);
+        }
+
+        // place the bodies in the grid
+        entities.update(TIME_STEP);
+
+        blasts = new Vector3f[BLASTS];
+        for (int i = 0; i < BLASTS; ++i) {
+            blasts[i] = new Vector3f(
+                    random.nextFloat() * side, random.nextFloat() * 20.0f, random.nextFloat() * side);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        space.destroy();
+    }
+
+    /**
+     * Queues the blast, runs the physics tick that applies it and hands the damage
+     * back, as one frame of the game would.
+     */
+    @Benchmark
+    public void blast() {
+        blast = (blast + 1) % BLASTS;
+        explosionForce.apply(blasts[blast]);
+        explosionForce.prePhysicsTick(space, TIME_STEP);
+        damageQueue.update(TIME_STEP);
+    }
+}
@@ -0,0 +1,71 @@
+package nu.takacs.gametest.benchmark;
+
+import com.jme3.effect.ParticleEmitter;
+import com.jme3.math.Vector3f;
+import nu.takacs.gametest.entity.EntityRegistry;
+import nu.takacs.gametest.factory.BoxFactory;
+import nu.takacs.gametest.factory.ExplosionFactory;
+import nu.takacs.gametest.factory.GrenadeFactory;
+import nu.takacs.gametest.particle.FireParticleState;
+import nu.takacs.gametest.time.GameTimerState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spawn/despawn throughput of the factories in steady state, i.e. with warm pools.
+ * Needs the game's assets on the class path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FactoryBenchmark {
+
+    private final Vector3f location = new Vector3f(10.0f, 0.0f, 10.0f);
+
+    private BoxFactory boxFactory;
+    private GrenadeFactory grenadeFactory;
+    private ExplosionFactory explosionFactory;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        HeadlessApplication.loadBullet();
+
+        final var application = new HeadlessApplication();
+        final var timers = new GameTimerState();
+        final var entities = new EntityRegistry(timers, 40.0f);
+
+        boxFactory = new BoxFactory(application, new FireParticleState(application), entities);
+        grenadeFactory = new GrenadeFactory(application, entities);
+        explosionFactory = new ExplosionFactory(application, timers);
+    }
+
+    @Benchmark
+    public void box() {
+        boxFactory.release(boxFactory.createBox(spatial -> {}));
+    }
+
+    @Benchmark
+    public void grenade() {
+        grenadeFactory.recycle(grenadeFactory.createGrenade());
+    }
+
+    @Benchmark
+    public void explosion() {
+        final var explosion = (ParticleEmitter) explosionFactory.createExplosion(location);
+        explosionFactory.getPool().release(explosion);
+    }
+}
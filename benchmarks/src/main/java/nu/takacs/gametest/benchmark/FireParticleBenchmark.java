@@ -0,0 +1,72 @@
+package nu.takacs.gametest.benchmark;
+
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Node;
+import nu.takacs.gametest.particle.FireParticleState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One frame of the fire particle system with burning boxes, once the fires have been
+ * burning long enough for the particle count to level off. Compare the time per
+ * particle across fire counts. Needs the game's assets on the class path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FireParticleBenchmark {
+
+    private static final float TPF = 1.0f / 60.0f;
+    private static final float SPACING = 5.0f;
+    // a bit over the longest particle life
+    private static final float SETTLE_SECONDS = 3.0f;
+
+    @Param({"50", "500"})
+    public int fireCount;
+
+    private FireParticleState fires;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final var application = new HeadlessApplication();
+
+        fires = new FireParticleState(application);
+        fires.initialize(application.getStateManager(), application);
+
+        final int side = (int) Math.ceil(Math.sqrt(fireCount));
+
+        for (int i = 0; i < fireCount; ++i) {
+            final var box = new Node("BoxNode");
+            box.setLocalTranslation(new Vector3f(i % side * SPACING, 0.0f, i / side * SPACING));
+            box.updateGeometricState();
+
+            fires.addFire(box);
+        }
+
+        for (float t = 0.0f; t < SETTLE_SECONDS; t += TPF) {
+            fires.update(TPF);
+        }
+    }
+
+    @Benchmark
+    public int frame() {
+        fires.update(TPF);
+
+        return fires.getParticleCount();
+    }
+}
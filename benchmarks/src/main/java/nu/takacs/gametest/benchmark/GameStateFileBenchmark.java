@@ -0,0 +1,93 @@
+package nu.takacs.gametest.benchmark;
+
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import nu.takacs.gametest.ai.AiState;
+import nu.takacs.gametest.save.EntityStates;
+import nu.takacs.gametest.save.EntityType;
+import nu.takacs.gametest.save.GameStateFile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing and reading the entity state file, without the scene rebuild on either side.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameStateFileBenchmark {
+
+    @Param({"1000", "100000"})
+    public int entityCount;
+
+    private EntityStates states;
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        final var random = new Random(42);
+        final var location = new Vector3f();
+        final var rotation = new Quaternion();
+        final var velocity = new Vector3f();
+        final var types = EntityType.values();
+
+        states = new EntityStates(entityCount);
+
+        for (int i = 0; i < entityCount; ++i) {
+            final int index = states.add(types[i % types.length]);
+
+            location.set(random.nextFloat() * 1000, random.nextFloat() * 20, random.nextFloat() * 1000);
+            rotation.fromAngles(0, random.nextFloat() * 6.28f, 0);
+            velocity.set(random.nextFloat(), random.nextFloat(), random.nextFloat());
+
+            states.setTransform(index, location, rotation);
+            states.setVelocity(index, velocity, velocity);
+            states.setHealth(index, random.nextInt(100));
+            states.setFuse(index, random.nextFloat() * 2);
+            states.setAi(index, AiState.WALKING, random.nextFloat() * 3, 1, 0);
+        }
+
+        file = Files.createTempFile("game-state", ".gts");
+        save();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public long save() throws IOException {
+        try (final var out = new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024)) {
+            GameStateFile.write(states, out);
+        }
+
+        return Files.size(file);
+    }
+
+    @Benchmark
+    public int load() throws IOException {
+        return GameStateFile.read(file).size();
+    }
+}
@@ -0,0 +1,32 @@
+package nu.takacs.gametest.benchmark;
+
+import com.jme3.app.SimpleApplication;
+import com.jme3.app.state.AppState;
+import com.jme3.renderer.Camera;
+import com.jme3.system.JmeSystem;
+import com.jme3.system.NativeLibraryLoader;
+
+/**
+ * Application that is never started. It only provides an asset manager, a camera and
+ * the root/GUI nodes, which is all the factories, controls, states and HUD need, so
+ * benchmarks can run without a display or a GPU.
+ */
+final class HeadlessApplication extends SimpleApplication {
+
+    HeadlessApplication() {
+        super((AppState[]) null);
+
+        assetManager = JmeSystem.newAssetManager(Thread.currentThread()
+                .getContextClassLoader()
+                .getResource("com/jme3/asset/Desktop.cfg"));
+        cam = new Camera(1280, 768);
+    }
+
+    static void loadBullet() {
+        NativeLibraryLoader.loadNativeLibrary("bulletjme", true);
+    }
+
+    @Override
+    public void simpleInitApp() {
+    }
+}
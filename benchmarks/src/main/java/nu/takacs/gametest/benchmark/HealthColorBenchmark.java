@@ -0,0 +1,82 @@
+package nu.takacs.gametest.benchmark;
+
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.shape.Box;
+import nu.takacs.gametest.control.HealthColorControl;
+import nu.takacs.gametest.control.HealthColorPalette;
+import nu.takacs.gametest.control.HealthDestructionControl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Health coloring of boxes: a logical frame where nothing was hit, and a single
+ * hit that changes one box's health.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HealthColorBenchmark {
+
+    @Param({"100", "2000"})
+    public int boxCount;
+
+    private Node rootNode;
+    private HealthDestructionControl[] healthControls;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final var application = new HeadlessApplication();
+        final var palette = new HealthColorPalette(application, 11);
+        final var mesh = new Box(1.0f, 1.0f, 1.0f);
+
+        rootNode = new Node("root");
+        healthControls = new HealthDestructionControl[boxCount];
+
+        for (int i = 0; i < boxCount; ++i) {
+            final var node = new Node("BoxNode");
+            final var box = new Geometry("BoxGeometry", mesh);
+            node.attachChild(box);
+
+            final var colorControl = new HealthColorControl(palette);
+            box.addControl(colorControl);
+
+            final var healthControl = new HealthDestructionControl(spatial -> {});
+            node.addControl(healthControl);
+            healthControl.addHealthListener(colorControl);
+
+            healthControls[i] = healthControl;
+            rootNode.attachChild(node);
+        }
+    }
+
+    @Benchmark
+    public void idleFrame() {
+        rootNode.updateLogicalState(1.0f / 60.0f);
+    }
+
+    @Benchmark
+    public void hit() {
+        next = (next + 1) % boxCount;
+
+        final var healthControl = healthControls[next];
+        // stay above zero so the box never blows up
+        healthControl.setHealth(healthControl.getHealth() <= 1 ? 100 : healthControl.getHealth() - 7);
+    }
+}
@@ -0,0 +1,63 @@
+package nu.takacs.gametest.benchmark;
+
+import nu.takacs.gametest.hud.Hud;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HudBenchmark {
+
+    private static final int BURST = 50;
+
+    private Hud hud;
+    private String[] messages;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final var application = new HeadlessApplication();
+        final var font = application.getAssetManager().loadFont("Interface/Fonts/Default.fnt");
+
+        hud = new Hud(application, font, 1280, 768);
+
+        messages = new String[BURST + 1];
+        for (int i = 0; i < messages.length; ++i) {
+            messages[i] = "Grenade " + i + "!";
+        }
+    }
+
+    @Benchmark
+    public void consoleAppend() {
+        hud.consoleAppend("Grenade!");
+    }
+
+    /**
+     * A frame with a burst of messages, redrawn once at the end of the frame.
+     */
+    @Benchmark
+    public void burstFrame() {
+        for (int i = 0; i < BURST; ++i) {
+            // distinct lines, as setting a text line to the text it has is free
+            next = (next + 1) % messages.length;
+            hud.consoleAppend(messages[next]);
+        }
+
+        hud.update(1.0f / 60.0f);
+    }
+}
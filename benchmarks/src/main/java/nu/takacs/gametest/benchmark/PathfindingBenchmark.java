@@ -0,0 +1,114 @@
+package nu.takacs.gametest.benchmark;
+
+import com.jme3.math.Vector3f;
+import nu.takacs.gametest.nav.NavGrid;
+import nu.takacs.gametest.nav.PathFinder;
+import nu.takacs.gametest.nav.PathService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one A* search over a grid the size of the game's, on rolling hills with
+ * ridges too steep to walk, and of a request the path service answers from its cache.
+ * Goals are {@code distance} cells from the start, in a random direction.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathfindingBenchmark {
+
+    private static final int SIZE = 513;
+    private static final int SAMPLES_PER_CELL = 4;
+    private static final Vector3f SCALE = new Vector3f(2f, 1f, 2f);
+    private static final Vector3f TRANSLATION = new Vector3f(0, -100, 0);
+    private static final int QUERIES = 1024;
+    // few enough that every one stays in the cache
+    private static final int CACHED_QUERIES = 64;
+
+    @Param({"4", "32", "96"})
+    public int distance;
+
+    private NavGrid grid;
+    private PathFinder finder;
+    private PathService service;
+    private int[] starts;
+    private int[] goals;
+    private Vector3f[] from;
+    private Vector3f[] to;
+    private int query;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final var random = new Random(42);
+        final float[] heights = new float[SIZE * SIZE];
+
+        for (int z = 0; z < SIZE; ++z) {
+            for (int x = 0; x < SIZE; ++x) {
+                heights[z * SIZE + x] = (float) (40.0 * Math.sin(x * 0.03) * Math.cos(z * 0.025)
+                        + 25.0 * Math.sin((x + z) * 0.07));
+            }
+        }
+
+        grid = NavGrid.fromHeightMap(heights, SIZE, SAMPLES_PER_CELL, SCALE, TRANSLATION, 0.75f);
+        finder = new PathFinder(grid);
+        service = new PathService(grid, 0, CACHED_QUERIES);
+
+        starts = new int[QUERIES];
+        goals = new int[QUERIES];
+        from = new Vector3f[QUERIES];
+        to = new Vector3f[QUERIES];
+
+        for (int i = 0; i < QUERIES; ++i) {
+            int start;
+            int goal;
+
+            do {
+                start = grid.nearestWalkable(random.nextInt(grid.getCellCount()), 3);
+                final double angle = random.nextDouble() * 2.0 * Math.PI;
+                final int x = grid.cellX(Math.max(start, 0)) + (int) (Math.cos(angle) * distance);
+                final int z = grid.cellZ(Math.max(start, 0)) + (int) (Math.sin(angle) * distance);
+                goal = x < 0 || z < 0 || x >= grid.getWidth() || z >= grid.getDepth()
+                        ? -1 : grid.nearestWalkable(z * grid.getWidth() + x, 3);
+            } while (start == -1 || goal == -1);
+
+            starts[i] = start;
+            goals[i] = goal;
+            from[i] = new Vector3f(grid.centerX(start), 0, grid.centerZ(start));
+            to[i] = new Vector3f(grid.centerX(goal), 0, grid.centerZ(goal));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    @Benchmark
+    public int search() {
+        query = (query + 1) % QUERIES;
+        return finder.find(starts[query], goals[query]).getPointCount();
+    }
+
+    @Benchmark
+    public int cachedRequest() {
+        query = (query + 1) % CACHED_QUERIES;
+        return service.findPath(from[query], to[query]).join().getPointCount();
+    }
+}
@@ -0,0 +1,107 @@
+package nu.takacs.gametest.benchmark;
+
+import nu.takacs.gametest.physics.SpatialHashGrid;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of finding the bodies hit by a single blast, grid vs. the old linear scan.
+ * Bodies are spread at a constant density, so the number of bodies actually inside
+ * the blast radius stays the same while the total grows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpatialHashGridBenchmark {
+
+    private static final float BLAST_RADIUS = 40.0f;
+    private static final float AREA_PER_BODY = 100.0f;
+    private static final int BLASTS = 1024;
+
+    @Param({"100", "1000", "10000", "50000"})
+    public int bodyCount;
+
+    private SpatialHashGrid<Integer> grid;
+    private float[] positions;
+    private float[] blasts;
+    private int blast;
+    private int hits;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final var random = new Random(42);
+        final float side = (float) Math.sqrt(bodyCount * AREA_PER_BODY);
+
+        grid = new SpatialHashGrid<>(BLAST_RADIUS);
+        positions = new float[bodyCount * 3];
+
+        for (int i = 0; i < bodyCount; ++i) {
+            final float x = random.nextFloat() * side;
+            final float y = random.nextFloat() * 20.0f;
+            final float z = random.nextFloat() * side;
+
+            positions[i * 3] = x;
+            positions[i * 3 + 1] = y;
+            positions[i * 3 + 2] = z;
+
+            grid.put(i, x, y, z);
+        }
+
+        blasts = new float[BLASTS * 3];
+        for (int i = 0; i < BLASTS; ++i) {
+            blasts[i * 3] = random.nextFloat() * side;
+            blasts[i * 3 + 1] = random.nextFloat() * 20.0f;
+            blasts[i * 3 + 2] = random.nextFloat() * side;
+        }
+    }
+
+    @Benchmark
+    public int gridQuery() {
+        final int b = nextBlast();
+        hits = 0;
+
+        grid.query(blasts[b], blasts[b + 1], blasts[b + 2], BLAST_RADIUS, body -> ++hits);
+
+        return hits;
+    }
+
+    @Benchmark
+    public int linearScan() {
+        final int b = nextBlast();
+        final float radiusSquared = BLAST_RADIUS * BLAST_RADIUS;
+        int count = 0;
+
+        for (int i = 0; i < bodyCount; ++i) {
+            final float dx = positions[i * 3] - blasts[b];
+            final float dy = positions[i * 3 + 1] - blasts[b + 1];
+            final float dz = positions[i * 3 + 2] - blasts[b + 2];
+
+            if (dx * dx + dy * dy + dz * dz < radiusSquared) {
+                ++count;
+            }
+        }
+
+        return count;
+    }
+
+    private int nextBlast() {
+        blast = (blast + 1) % BLASTS;
+        return blast * 3;
+    }
+}
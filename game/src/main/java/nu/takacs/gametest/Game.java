@@ -0,0 +1,995 @@
+package nu.takacs.gametest;
+
+import ch.qos.logback.classic.Level;
+import com.jme3.anim.AnimComposer;
+import com.jme3.anim.tween.Tween;
+import com.jme3.app.SimpleApplication;
+import com.jme3.bullet.BulletAppState;
+import com.jme3.bullet.collision.shapes.CapsuleCollisionShape;
+import com.jme3.bullet.collision.shapes.CollisionShape;
+import com.jme3.bullet.collision.shapes.HeightfieldCollisionShape;
+import com.jme3.bullet.control.CharacterControl;
+import com.jme3.bullet.control.RigidBodyControl;
+import com.jme3.export.binary.BinaryExporter;
+import com.jme3.input.KeyInput;
+import com.jme3.input.MouseInput;
+import com.jme3.input.controls.ActionListener;
+import com.jme3.input.controls.KeyTrigger;
+import com.jme3.input.controls.MouseButtonTrigger;
+import com.jme3.light.DirectionalLight;
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Spatial;
+import com.jme3.system.AppSettings;
+import com.jme3.system.JmeContext;
+import com.jme3.terrain.geomipmap.TerrainGrid;
+import com.jme3.terrain.geomipmap.TerrainGridLodControl;
+import com.jme3.terrain.geomipmap.TerrainLodControl;
+import com.jme3.terrain.geomipmap.TerrainQuad;
+import com.jme3.util.SkyFactory;
+import nu.takacs.gametest.ai.AiSystemState;
+import nu.takacs.gametest.anim.AnimationLodState;
+import nu.takacs.gametest.control.AiControl;
+import nu.takacs.gametest.control.NpcCharacterControl;
+import nu.takacs.gametest.control.TimedDestructionControl;
+import nu.takacs.gametest.entity.DamageQueue;
+import nu.takacs.gametest.entity.EntityRegistry;
+import nu.takacs.gametest.entity.RelevanceState;
+import nu.takacs.gametest.factory.*;
+import nu.takacs.gametest.hud.Hud;
+import nu.takacs.gametest.hud.ProfilerPanel;
+import nu.takacs.gametest.jfr.SpawnEvent;
+import nu.takacs.gametest.jfr.StateCaptureEvent;
+import nu.takacs.gametest.loading.LoadingState;
+import nu.takacs.gametest.nav.PathService;
+import nu.takacs.gametest.particle.FireParticleState;
+import nu.takacs.gametest.physics.ExplosionForce;
+import nu.takacs.gametest.physics.TerrainTilePhysicsState;
+import nu.takacs.gametest.profiler.FrameProfiler;
+import nu.takacs.gametest.replay.InputLog;
+import nu.takacs.gametest.replay.InputRecorder;
+import nu.takacs.gametest.replay.InputReplayer;
+import nu.takacs.gametest.replay.ReplayTimer;
+import nu.takacs.gametest.save.EntityStates;
+import nu.takacs.gametest.save.EntityType;
+import nu.takacs.gametest.save.GameStateFile;
+import nu.takacs.gametest.save.SaveService;
+import nu.takacs.gametest.save.SceneSnapshot;
+import nu.takacs.gametest.time.GameTimerState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+
+public class Game extends SimpleApplication implements ActionListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Game.class);
+
+    private static final float GRENADE_EXPLOSION_CUTOFF = 40.0f;
+    private static final float GRENADE_FORCE_SIZE = 2500.0f;
+    private static final long AI_SEED = 1L;
+    private static final float ANIMATION_NEAR_DISTANCE = 30.0f;
+    private static final float ANIMATION_FAR_DISTANCE = 120.0f;
+    private static final int ANIMATION_REDUCED_INTERVAL = 4;
+    private static final long GRENADE_FUSE_MILLIS = 2000L;
+    // run with -Dgametest.pagedTerrain=true for endless, streamed terrain
+    private static final boolean PAGED_TERRAIN = Boolean.getBoolean("gametest.pagedTerrain");
+    private static final float PAGED_SPAWN_HEIGHT = 200.0f;
+    // fixed physics steps per second, and how many of them to catch up on in one frame
+    private static final int PHYSICS_TICK_RATE = Integer.getInteger("gametest.physics.tickRate", 60);
+    private static final int PHYSICS_MAX_SUB_STEPS = Integer.getInteger("gametest.physics.maxSubSteps", 4);
+    // time that detonations may take per frame, and blasts per physics tick, before the rest
+    // of a chain reaction waits for the next one
+    private static final int CHAIN_REACTION_BUDGET_MICROS =
+            Integer.getInteger("gametest.chainReactionBudgetMicros", 2000);
+    // recordings and replays cap them by count instead, which doesn't depend on the machine
+    private static final int CHAIN_REACTION_BUDGET_COUNT =
+            Integer.getInteger("gametest.chainReactionBudgetCount", 32);
+    // boxes and NPCs this far from the player go dormant, and wake up again closer in
+    private static final float SLEEP_RADIUS = Integer.getInteger("gametest.sleepRadius", 200);
+    private static final float WAKE_RADIUS = Integer.getInteger("gametest.wakeRadius", 160);
+    private static final float SLEEP_DELAY = 2.0f;
+    // above this many entities the boxes least recently near the player are evicted
+    private static final int ENTITY_BUDGET = Integer.getInteger("gametest.entityBudget", 2000);
+    // threads searching for NPC paths, and how many found paths to keep around
+    private static final int PATH_THREADS = Integer.getInteger("gametest.pathThreads", 2);
+    private static final int PATH_CACHE_SIZE = 1024;
+    private static final String SAVE_FILE_NAME = "saved-state.gts";
+    private static final String SCENE_EXPORT_FILE_NAME = "saved-scene.j3o";
+    private static final boolean SCENE_EXPORT_COMPRESSED = false;
+    private static final String PROFILE_EXPORT_FILE_NAME = "profile.csv";
+    private static final String[] SIMPLE_UPDATE_STEP = {"simpleUpdate"};
+    // the actions an input log records, in the order they are numbered in it
+    private static final String[] ACTIONS = {
+            "Left", "Right", "Up", "Down", "Jump", "Shoot", "Interact", "Interact2",
+            "Fire", "Save", "Load", "ExportScene", "Console", "Profiler", "ExportProfile",
+            "ScrollUp", "ScrollDown"
+    };
+
+    private final Path recordFile;
+    private final InputLog replayLog;
+    private final Path replayFile;
+
+    private InputRecorder inputRecorder;
+    private InputReplayer inputReplayer;
+
+    private GameTimerState timers;
+    private AiSystemState aiSystem;
+    private AnimationLodState animationLod;
+    private BulletAppState bulletAppState;
+    private EntityRegistry entities;
+    private DamageQueue damageQueue;
+    private RelevanceState relevance;
+    private ExplosionForce explosionForce;
+    private SaveService saveService;
+    private PathService pathService;
+    private FrameProfiler profiler;
+    private ProfilerPanel profilerPanel;
+
+    private CharacterControl player;
+    private Vector3f walkDirection = new Vector3f();
+    private boolean left = false, right = false, up = false, down = false;
+
+    private Hud hud;
+
+    private ExplosionFactory explosionFactory;
+    private FireParticleState fires;
+    private GrenadeFactory grenadeFactory;
+    private TerrainFactory terrainFactory;
+    private BoxFactory boxFactory;
+    private NpcFactory npcFactory;
+
+    private Vector3f camDir = new Vector3f();
+    private Vector3f camLeft = new Vector3f();
+    private Vector3f playerPosition = new Vector3f();
+
+    public Game(final Path recordFile, final InputLog replayLog, final Path replayFile) {
+        this.recordFile = recordFile;
+        this.replayLog = replayLog;
+        this.replayFile = replayFile;
+    }
+
+    /**
+     * Run with {@code --record <file>} to record the session's input, or with
+     * {@code --replay <file>} to play a recording back headless and report its frame times.
+     */
+    public static void main(String[] args) {
+        try {
+            Path recordFile = null;
+            Path replayFile = null;
+
+            for (int i = 0; i + 1 < args.length; i += 2) {
+                if (args[i].equals("--record")) {
+                    recordFile = Paths.get(args[i + 1]);
+                } else if (args[i].equals("--replay")) {
+                    replayFile = Paths.get(args[i + 1]);
+                } else {
+                    LOG.warn("Ignoring unknown option {}", args[i]);
+                }
+            }
+
+            final InputLog replayLog = replayFile == null ? null : InputLog.read(replayFile);
+
+            Game app = new Game(recordFile, replayLog, replayFile);
+
+            app.setShowSettings(false);
+
+            final var settings = new AppSettings(true);
+            settings.setTitle("Alexander's Playground");
+            settings.setResolution(1280, 768);
+
+            if (replayLog != null) {
+                // the headless context caps the frame rate at 60 unless told otherwise
+                settings.setFrameRate(Integer.MAX_VALUE);
+            }
+
+            app.setSettings(settings);
+
+            if (replayLog != null) {
+                // step by the recorded frame times, as fast as the machine allows
+                app.setTimer(new ReplayTimer(replayLog));
+                app.start(JmeContext.Type.Headless);
+            } else {
+                app.start();
+            }
+        } catch (final Exception e) {
+            LOG.error("Unhandled exception", e);
+        }
+    }
+
+    private void saveState() {
+        if (saveService.isSaving()) {
+            hud.consoleAppend("Still saving, try again in a moment");
+            return;
+        }
+
+        LOG.info("Saving game state...");
+
+        final var event = new StateCaptureEvent();
+        event.begin();
+
+        final var states = captureState();
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.entities = states.size();
+            event.commit();
+        }
+
+        saveService.save(Paths.get(SAVE_FILE_NAME), false,
+                out -> GameStateFile.write(states, out),
+                saveListener());
+
+        hud.consoleAppend("Saving " + states.size() + " entities...");
+    }
+
+    private void exportScene() {
+        if (saveService.isSaving()) {
+            hud.consoleAppend("Still saving, try again in a moment");
+            return;
+        }
+
+        LOG.info("Exporting scene...");
+
+        final var snapshot = SceneSnapshot.capture(rootNode);
+        final var target = Paths.get(SCENE_EXPORT_COMPRESSED
+                ? SCENE_EXPORT_FILE_NAME + ".gz"
+                : SCENE_EXPORT_FILE_NAME);
+
+        saveService.save(target, SCENE_EXPORT_COMPRESSED,
+                out -> BinaryExporter.getInstance().save(snapshot.build(), out),
+                saveListener());
+
+        hud.consoleAppend("Exporting scene...");
+    }
+
+    private void exportProfile() {
+        if (saveService.isSaving()) {
+            hud.consoleAppend("Still saving, try again in a moment");
+            return;
+        }
+
+        final var snapshot = profiler.snapshot();
+
+        saveService.save(Paths.get(PROFILE_EXPORT_FILE_NAME), false,
+                snapshot::writeCsv, saveListener());
+
+        hud.consoleAppend("Exporting " + snapshot.getFrameCount() + " profiled frames...");
+    }
+
+    private SaveService.SaveListener saveListener() {
+        return new SaveService.SaveListener() {
+            @Override
+            public void onProgress(final long bytesWritten) {
+                hud.consoleAppend(String.format("Saving... %d KB", bytesWritten / 1024));
+            }
+
+            @Override
+            public void onCompleted(final Path file, final long bytesWritten, final long millis) {
+                hud.consoleAppend(String.format("Saved %s (%d KB, %d ms)",
+                        file, bytesWritten / 1024, millis));
+            }
+
+            @Override
+            public void onFailed(final Path file, final IOException e) {
+                hud.consoleAppend("Save failed: " + e.getMessage());
+            }
+        };
+    }
+
+    private void loadState() {
+        LOG.info("Loading game state...");
+
+        final long start = System.nanoTime();
+        final EntityStates states;
+
+        try {
+            states = GameStateFile.read(Paths.get(SAVE_FILE_NAME));
+        } catch (final IOException e) {
+            LOG.error("Failed to load game state", e);
+            hud.consoleAppend("Load failed: " + e.getMessage());
+            return;
+        }
+
+        removeEntities();
+        restoreState(states);
+
+        final long millis = (System.nanoTime() - start) / 1_000_000L;
+        LOG.info("Loaded {} entities in {} ms", states.size(), millis);
+        hud.consoleAppend(String.format("Loaded %d entities (%d ms)", states.size(), millis));
+    }
+
+    private EntityStates captureState() {
+        final var states = new EntityStates(entities.getCount());
+        final var location = new Vector3f();
+        final var rotation = new Quaternion();
+        final var linearVelocity = new Vector3f();
+        final var angularVelocity = new Vector3f();
+
+        states.setPlayerLocation(player.getPhysicsLocation(location));
+
+        for (int e = 0, n = entities.getCount(); e < n; ++e) {
+            final int id = entities.getId(e);
+            final var type = entities.getType(id);
+            final var child = entities.getSpatial(id);
+            final var body = entities.getBody(id);
+
+            final int i = states.add(type);
+
+            if (type == EntityType.NPC) {
+                final var ai = child.getControl(AiControl.class);
+
+                body.getLinearVelocity(linearVelocity);
+
+                states.setTransform(i, body.getPhysicsLocation(location), child.getLocalRotation());
+                states.setVelocity(i, linearVelocity, Vector3f.ZERO);
+                states.setAi(i, ai.getState(), ai.getTimeLeft(), ai.getDirectionX(), ai.getDirectionZ());
+                continue;
+            }
+
+            body.getLinearVelocity(linearVelocity);
+            body.getAngularVelocity(angularVelocity);
+
+            states.setTransform(i, body.getPhysicsLocation(location), body.getPhysicsRotation(rotation));
+            states.setVelocity(i, linearVelocity, angularVelocity);
+
+            if (entities.has(id, EntityRegistry.HEALTH)) {
+                states.setHealth(i, entities.getHealth(id));
+            }
+
+            if (entities.has(id, EntityRegistry.FUSE)) {
+                states.setFuse(i, entities.getFuseLeft(id));
+            }
+        }
+
+        return states;
+    }
+
+    private void restoreState(final EntityStates states) {
+        final var location = new Vector3f();
+        final var rotation = new Quaternion();
+        final var linearVelocity = new Vector3f();
+        final var angularVelocity = new Vector3f();
+        final var viewDirection = new Vector3f();
+
+        player.setPhysicsLocation(states.getPlayerLocation());
+
+        for (int i = 0, n = states.size(); i < n; ++i) {
+            states.getLocation(i, location);
+            states.getRotation(i, rotation);
+            states.getLinearVelocity(i, linearVelocity);
+            states.getAngularVelocity(i, angularVelocity);
+
+            switch (states.getType(i)) {
+                case GRENADE:
+                    spawnGrenade(location, rotation, linearVelocity, angularVelocity,
+                            Math.max(1L, Math.round(states.getFuse(i) * 1000.0)));
+                    break;
+
+                case BOX:
+                    spawnBox(location, rotation, linearVelocity, angularVelocity,
+                            states.getHealth(i));
+                    break;
+
+                case NPC:
+                    final var npc = spawnNpc(location,
+                            rotation.mult(Vector3f.UNIT_Z, viewDirection), linearVelocity);
+                    npc.getControl(AiControl.class).restore(states.getAiState(i),
+                            states.getAiTimeLeft(i), states.getAiDirectionX(i), states.getAiDirectionZ(i));
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Takes every grenade, box and NPC out of the world, handing them back to their factories.
+     */
+    private void removeEntities() {
+        // backwards, as removing an entity moves the last one into its place
+        for (int e = entities.getCount() - 1; e >= 0; --e) {
+            final int id = entities.getId(e);
+            final var child = entities.getSpatial(id);
+
+            switch (entities.getType(id)) {
+                case GRENADE:
+                    bulletAppState.getPhysicsSpace().removeAll(child);
+                    grenadeFactory.recycle(child);
+                    break;
+
+                case BOX:
+                    removeBox(child);
+                    boxFactory.release(child);
+                    break;
+
+                case NPC:
+                    removeNpc(child);
+                    break;
+            }
+        }
+    }
+
+    @Override
+    public void simpleInitApp() {
+        setDisplayStatView(false);
+        setDisplayFps(false);
+
+        final var loading = new LoadingState();
+        stateManager.attach(loading);
+
+        // input is recorded and replayed ahead of the states that react to it
+        if (replayLog != null) {
+            inputReplayer = new InputReplayer(replayLog, (ReplayTimer) timer, this,
+                    Paths.get(replayFile + ".frametimes.csv"));
+            stateManager.attach(inputReplayer);
+        } else if (recordFile != null) {
+            inputRecorder = new InputRecorder(recordFile, ACTIONS);
+            stateManager.attach(inputRecorder);
+        }
+
+        hud = new Hud(this, guiFont, settings.getWidth(), settings.getHeight());
+        stateManager.attach(hud);
+        hud.captureLog(Level.INFO);
+
+        saveService = new SaveService(this);
+
+        profiler = new FrameProfiler();
+        profilerPanel = new ProfilerPanel(profiler, guiFont);
+        stateManager.attach(profilerPanel);
+
+        timers = new GameTimerState();
+        // game time starts with the session, however long loading takes
+        timers.setPaused(true);
+        stateManager.attach(timers);
+
+        entities = new EntityRegistry(timers, GRENADE_EXPLOSION_CUTOFF);
+        stateManager.attach(entities);
+
+        final boolean reproducible = inputRecorder != null || inputReplayer != null;
+        final long chainReactionBudgetNanos = reproducible
+                ? Long.MAX_VALUE
+                : CHAIN_REACTION_BUDGET_MICROS * 1000L;
+
+        damageQueue = new DamageQueue(entities, chainReactionBudgetNanos);
+        if (reproducible) {
+            damageQueue.setMaxDetonations(CHAIN_REACTION_BUDGET_COUNT);
+        }
+        stateManager.attach(damageQueue);
+
+        relevance = new RelevanceState(entities, timers, WAKE_RADIUS, SLEEP_RADIUS, SLEEP_DELAY,
+                ENTITY_BUDGET, this::evictBox);
+        stateManager.attach(relevance);
+
+        aiSystem = new AiSystemState(timers, AI_SEED);
+        stateManager.attach(aiSystem);
+
+        animationLod = new AnimationLodState(ANIMATION_NEAR_DISTANCE,
+                ANIMATION_FAR_DISTANCE, ANIMATION_REDUCED_INTERVAL);
+        stateManager.attach(animationLod);
+
+        // everything that doesn't touch the scene loads in the background
+        final var terrainFactoryStage = loading.load("terrain assets", () -> new TerrainFactory(this));
+        final var terrainStage = loading.then("terrain", terrainFactoryStage, this::buildTerrain);
+        final var navGridStage = loading.then("nav grid", terrainStage,
+                terrain -> PAGED_TERRAIN ? null : terrainFactoryStage.join().createNavGrid(terrain));
+        final var skyStage = loading.load("sky", () -> SkyFactory.createSky(
+                getAssetManager(), "Textures/Sky/Bright/BrightSky.dds",
+                SkyFactory.EnvMapType.CubeMap));
+        final var explosionFactoryStage = loading.load("explosions",
+                () -> new ExplosionFactory(this, timers));
+        final var firesStage = loading.load("fires", () -> new FireParticleState(this));
+        final var grenadeFactoryStage = loading.load("grenades", () -> new GrenadeFactory(this, entities));
+        final var boxFactoryStage = loading.then("boxes", firesStage,
+                fires -> new BoxFactory(this, fires, entities));
+        final var npcFactoryStage = loading.load("npcs", () -> new NpcFactory(this, entities));
+
+        // physics steps on its own thread while the frame renders
+        bulletAppState = new BulletAppState();
+        bulletAppState.setThreadingType(BulletAppState.ThreadingType.PARALLEL);
+        stateManager.attach(bulletAppState);
+        bulletAppState.getPhysicsSpace().setAccuracy(1.0f / PHYSICS_TICK_RATE);
+        bulletAppState.getPhysicsSpace().setMaxSubSteps(PHYSICS_MAX_SUB_STEPS);
+        bulletAppState.setEnabled(false);
+
+        explosionForce = new ExplosionForce(entities, damageQueue,
+                GRENADE_EXPLOSION_CUTOFF, GRENADE_FORCE_SIZE);
+        explosionForce.setBudgetNanos(chainReactionBudgetNanos);
+        if (reproducible) {
+            explosionForce.setMaxBlasts(CHAIN_REACTION_BUDGET_COUNT);
+        }
+        bulletAppState.getPhysicsSpace().addTickListener(explosionForce);
+        bulletAppState.getPhysicsSpace().addTickListener(profiler);
+
+        //bulletAppState.setDebugEnabled(true);
+
+        // We re-use the flyby camera for rotation, while positioning is handled by physics
+        viewPort.setBackgroundColor(new ColorRGBA(0.7f, 0.8f, 1f, 1f));
+        flyCam.setMoveSpeed(100);
+
+        loading.whenLoaded(() -> {
+            terrainFactory = terrainFactoryStage.join();
+            explosionFactory = explosionFactoryStage.join();
+            fires = firesStage.join();
+            stateManager.attach(fires);
+            rootNode.attachChild(fires.getGeometry());
+            grenadeFactory = grenadeFactoryStage.join();
+            boxFactory = boxFactoryStage.join();
+            rootNode.attachChild(boxFactory.getInstancedNode());
+            npcFactory = npcFactoryStage.join();
+
+            getRootNode().attachChild(skyStage.join());
+
+            initTerrain(terrainStage.join());
+
+            // NPCs on the endless terrain have no grid to find paths on, and walk straight
+            final var navGrid = navGridStage.join();
+            if (navGrid != null) {
+                // recordings and replays search inline, so paths turn up on the same frames in both
+                final boolean inline = inputRecorder != null || inputReplayer != null;
+                pathService = new PathService(navGrid, inline ? 0 : PATH_THREADS, PATH_CACHE_SIZE);
+                aiSystem.setPathService(pathService);
+            }
+
+            final var playerCapsuleShape =
+                    new CapsuleCollisionShape(0.5f, 2f, 1);
+            player = new CharacterControl(playerCapsuleShape, 0.05f);
+            player.setJumpSpeed(20);
+            player.setFallSpeed(30);
+
+            bulletAppState.getPhysicsSpace().add(player);
+
+            player.setGravity(new Vector3f(0, -50f, 0));
+            player.setPhysicsLocation(new Vector3f(0, PAGED_TERRAIN ? PAGED_SPAWN_HEIGHT : 20, -100));
+
+            profilerPanel.addCounter("rigid bodies",
+                    () -> bulletAppState.getPhysicsSpace().getRigidBodyList().size());
+            profilerPanel.addCounter("emitters", () -> explosionFactory.getPool().getInUseCount());
+            profilerPanel.addCounter("fires", fires::getFireCount);
+            profilerPanel.addCounter("fire particles", fires::getParticleCount);
+            profilerPanel.addCounter("entities", entities::getCount);
+            profilerPanel.addCounter("dormant", relevance::getDormantCount);
+            profilerPanel.addCounter("evicted", () -> (int) relevance.getEvictedCount());
+            profilerPanel.addCounter("NPCs", aiSystem::getAgentCount);
+            if (pathService != null) {
+                profilerPanel.addCounter("paths pending", pathService::getPendingCount);
+                profilerPanel.addCounter("path cache hits", pathService::getCacheHitCount);
+            }
+            profilerPanel.addCounter("damage events", damageQueue::getLastEventCount);
+            profilerPanel.addCounter("detonations", damageQueue::getLastDetonatedCount);
+            profilerPanel.addCounter("detonations queued", damageQueue::getPendingDetonationCount);
+            profilerPanel.addCounter("detonations deferred", () -> (int) damageQueue.getDeferredCount());
+            profilerPanel.addCounter("blasts queued", explosionForce::getPendingBlastCount);
+            profilerPanel.addCounter("pending timers", timers::getPendingCount);
+
+            setUpKeys();
+
+            // the session starts at the top of the next frame, before its time step is taken
+            enqueue(this::startSession);
+        });
+    }
+
+    /**
+     * Sets the world in motion and starts recording or replaying input. Everything a
+     * session does happens from here on, so a replay starts from the same state as the
+     * recording did.
+     */
+    private void startSession() {
+        bulletAppState.setEnabled(true);
+        timers.setPaused(false);
+
+        if (inputReplayer != null) {
+            inputReplayer.start();
+        } else if (inputRecorder != null) {
+            inputRecorder.start();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (saveService != null) {
+            saveService.shutdown();
+        }
+
+        if (pathService != null) {
+            pathService.shutdown();
+        }
+
+        super.destroy();
+    }
+
+    /**
+     * Creates the terrain and, for the fixed map, its collision. Runs on a loader
+     * thread, so it must not touch the scene or the physics space.
+     */
+    private TerrainQuad buildTerrain(final TerrainFactory factory) {
+        if (PAGED_TERRAIN) {
+            final var grid = factory.createPagedTerrain();
+
+            /** 5. The LOD (level of detail) depends on were the camera is: */
+            grid.addControl(new TerrainGridLodControl(grid, getCamera()));
+
+            return grid;
+        }
+
+        final var terrain = factory.createTerrain();
+
+        /** 5. The LOD (level of detail) depends on were the camera is: */
+        final var control = new TerrainLodControl(terrain, getCamera());
+        terrain.addControl(control);
+
+        // one heightfield over the whole map rather than a triangle mesh of it
+        final CollisionShape sceneShape = new HeightfieldCollisionShape(
+                terrain.getHeightMap(), terrain.getLocalScale());
+        terrain.addControl(new RigidBodyControl(sceneShape, 0));
+
+        return terrain;
+    }
+
+    private void initTerrain(final TerrainQuad terrain) {
+        DirectionalLight sun = new DirectionalLight();
+        sun.setColor(ColorRGBA.White);
+        sun.setDirection(new Vector3f(-.5f, -.5f, -.5f).normalizeLocal());
+        rootNode.addLight(sun);
+
+        rootNode.attachChild(terrain);
+
+        if (terrain instanceof TerrainGrid) {
+            // tiles get their collision as they are paged in
+            final var tilePhysics = new TerrainTilePhysicsState(bulletAppState.getPhysicsSpace());
+            stateManager.attach(tilePhysics);
+            ((TerrainGrid) terrain).addListener(tilePhysics);
+        } else {
+            bulletAppState.getPhysicsSpace().add(terrain.getControl(RigidBodyControl.class));
+        }
+    }
+
+    private void createGrenade() {
+        final var event = new SpawnEvent();
+        event.begin();
+
+        final var rotation = grenadeFactory.getPool().getTemplate().getLocalRotation()
+                .mult(cam.getRotation());
+        //grenade.rotate(-3.1415f / 2, 0, 0);
+
+        final var location = cam.getLocation()
+                .add(cam.getDirection().normalizeLocal().mult(4.0f));
+
+        spawnGrenade(location, rotation, cam.getDirection().mult(40.0f),
+                Vector3f.ZERO, GRENADE_FUSE_MILLIS);
+
+        commitSpawn(event, EntityType.GRENADE.getObjectType(), location);
+    }
+
+    private static void commitSpawn(final SpawnEvent event, final String entityType, final Vector3f location) {
+        event.end();
+
+        if (event.shouldCommit()) {
+            event.entityType = entityType;
+            event.x = location.x;
+            event.y = location.y;
+            event.z = location.z;
+            event.commit();
+        }
+    }
+
+    private Spatial spawnGrenade(final Vector3f location,
+                                 final Quaternion rotation,
+                                 final Vector3f linearVelocity,
+                                 final Vector3f angularVelocity,
+                                 final long fuseMillis) {
+        final var grenade = grenadeFactory.createGrenade();
+
+        grenade.setLocalRotation(rotation);
+        grenade.setLocalTranslation(location);
+
+        rootNode.attachChild(grenade);
+
+        final RigidBodyControl grenadeBodyControl =
+                grenade.getControl(RigidBodyControl.class);
+
+        grenadeBodyControl.setPhysicsLocation(location);
+        grenadeBodyControl.setPhysicsRotation(rotation);
+
+        entities.setFuse(EntityRegistry.idOf(grenade), fuseMillis / 1000.0f);
+
+        grenade.addControl(new TimedDestructionControl(timers, spatial -> {
+            bulletAppState.getPhysicsSpace().removeAll(spatial);
+
+            LOG.debug("BOOM!");
+            spawnExplosion(spatial.getLocalTranslation());
+
+            applyExplosionForce(spatial.getLocalTranslation());
+
+            grenadeFactory.recycle(spatial);
+        }, fuseMillis));
+
+        bulletAppState.getPhysicsSpace().add(grenadeBodyControl);
+
+        grenadeBodyControl.setLinearVelocity(linearVelocity);
+        grenadeBodyControl.setAngularVelocity(angularVelocity);
+
+        return grenade;
+    }
+
+    private void spawnExplosion(final Vector3f translation) {
+        final var explosion = explosionFactory.createExplosion(translation);
+
+        if (explosion != null) {
+            rootNode.attachChild(explosion);
+        }
+    }
+
+    private void applyExplosionForce(final Vector3f translation) {
+        // dormant bodies aren't in the physics space, so bring them back before the blast
+        relevance.wakeAround(translation, explosionForce.getCutoff());
+        explosionForce.apply(translation);
+    }
+
+    private void createNpc() {
+        final var event = new SpawnEvent();
+        event.begin();
+
+        final var spawnLocation = cam.getLocation()
+                .addLocal(cam.getDirection().normalizeLocal().multLocal(5.0f));
+        LOG.info("Spawn location = {}", spawnLocation);
+
+        spawnNpc(spawnLocation, Vector3f.UNIT_Z, Vector3f.ZERO);
+
+        commitSpawn(event, EntityType.NPC.getObjectType(), spawnLocation);
+    }
+
+    private Spatial spawnNpc(final Vector3f location,
+                             final Vector3f viewDirection,
+                             final Vector3f linearVelocity) {
+        final var npcSpatial = npcFactory.createNpc();
+
+        final var npcControl = npcSpatial.getControl(NpcCharacterControl.class);
+        bulletAppState.getPhysicsSpace().add(npcControl);
+
+        npcSpatial.addControl(new AiControl(aiSystem, entities));
+        animationLod.register(npcSpatial, npcSpatial.getChild(NpcFactory.MODEL_NAME));
+
+        npcControl.warp(location);
+        npcControl.setViewDirection(viewDirection);
+        npcControl.getRigidBody().setLinearVelocity(linearVelocity);
+
+        rootNode.attachChild(npcSpatial);
+
+        return npcSpatial;
+    }
+
+    private void removeNpc(final Spatial npcSpatial) {
+        bulletAppState.getPhysicsSpace().removeAll(npcSpatial);
+        animationLod.unregister(npcSpatial);
+        npcSpatial.removeControl(AiControl.class);
+        npcSpatial.removeFromParent();
+        npcFactory.release(npcSpatial);
+    }
+
+    public Tween backToStand(AnimComposer animComposer) {
+        return animComposer.setCurrentAction("stand");
+    }
+
+    private void createBox() {
+        final var event = new SpawnEvent();
+        event.begin();
+
+        final var location = cam.getLocation().add(cam.getDirection().normalize().mult(20.0f));
+        spawnBox(location, Quaternion.IDENTITY, Vector3f.ZERO, Vector3f.ZERO, BoxFactory.MAX_HEALTH);
+
+        commitSpawn(event, EntityType.BOX.getObjectType(), location);
+    }
+
+    private Spatial spawnBox(final Vector3f location,
+                             final Quaternion rotation,
+                             final Vector3f linearVelocity,
+                             final Vector3f angularVelocity,
+                             final int health) {
+        final Spatial box = boxFactory.createBox(spatial -> {
+            removeBox(spatial);
+
+            LOG.debug("BOOM!");
+            spawnExplosion(spatial.getLocalTranslation());
+
+            applyExplosionForce(spatial.getLocalTranslation());
+
+            boxFactory.release(spatial);
+        });
+
+        final int id = EntityRegistry.idOf(box);
+        entities.setHealth(id, health);
+
+        if (health < 1) {
+            // saved while waiting to detonate
+            damageQueue.detonate(id);
+        }
+
+        final RigidBodyControl boxControl =
+                box.getControl(RigidBodyControl.class);
+
+        boxControl.setPhysicsLocation(location);
+        boxControl.setPhysicsRotation(rotation);
+
+        bulletAppState.getPhysicsSpace().add(boxControl);
+
+        boxControl.setLinearVelocity(linearVelocity);
+        boxControl.setAngularVelocity(angularVelocity);
+
+        boxFactory.getInstancedNode().attachChild(box);
+
+        return box;
+    }
+
+    private void removeBox(final Spatial box) {
+        bulletAppState.getPhysicsSpace().removeAll(box);
+    }
+
+    private void evictBox(final int id) {
+        final var box = entities.getSpatial(id);
+
+        removeBox(box);
+        boxFactory.release(box);
+    }
+
+    private void createFire() {
+        final var event = new SpawnEvent();
+        event.begin();
+
+        final var location = cam.getLocation().add(cam.getDirection().normalize().mult(20.0f));
+        fires.addFire(location);
+
+        commitSpawn(event, "fire", location);
+    }
+
+    @Override
+    public void simpleUpdate(float tpf) {
+        if (player == null) {
+            // still loading
+            return;
+        }
+
+        final var appProfiler = getAppProfiler();
+        if (appProfiler != null) {
+            appProfiler.appSubStep(SIMPLE_UPDATE_STEP);
+        }
+
+        // flatten the camera axes onto the walking plane
+        cam.getDirection(camDir).multLocal(0.3f, 0.0f, 0.3f);
+        cam.getLeft(camLeft).multLocal(0.2f, 0.0f, 0.2f);
+        walkDirection.set(0, 0, 0);
+        if (left) {
+            walkDirection.addLocal(camLeft);
+        }
+        if (right) {
+            walkDirection.subtractLocal(camLeft);
+        }
+        if (up) {
+            walkDirection.addLocal(camDir);
+        }
+        if (down) {
+            walkDirection.subtractLocal(camDir);
+        }
+        player.setWalkDirection(walkDirection);
+
+        final var playerPosition = player.getPhysicsLocation(this.playerPosition);
+        cam.setLocation(playerPosition);
+
+//        hud.append(String.format("playerPosition = (%.2f, %.2f, %.2f)",
+//                playerPosition.x, playerPosition.y, playerPosition.z));
+    }
+
+    @Override
+    public void onAction(String binding, boolean isPressed, float tpf) {
+        if (inputRecorder != null) {
+            inputRecorder.onAction(binding, isPressed);
+        }
+
+        if (binding.equals("Left")) {
+            left = isPressed;
+        } else if (binding.equals("Right")) {
+            right = isPressed;
+        } else if (binding.equals("Up")) {
+            up = isPressed;
+        } else if (binding.equals("Down")) {
+            down = isPressed;
+        } else if (binding.equals("Jump")) {
+            if (isPressed) {
+                player.jump(new Vector3f(0, 20f, 0));
+            }
+        } else if (binding.equals("Shoot")) {
+            if (isPressed) {
+                createGrenade();
+                hud.consoleAppend("Grenade!");
+            }
+        } else if (binding.equals("Interact")) {
+            if (isPressed) {
+                createNpc();
+                hud.consoleAppend("Creating NPC!");
+            }
+        } else if (binding.equals("Interact2")) {
+            if (isPressed) {
+                createBox();
+            }
+        } else if (binding.equals("Fire")) {
+            if (isPressed) {
+                createFire();
+            }
+        } else if (binding.equals("Save")) {
+            if (isPressed) {
+                saveState();
+            }
+        } else if (binding.equals("Load")) {
+            if (isPressed) {
+                loadState();
+            }
+        } else if (binding.equals("ExportScene")) {
+            if (isPressed) {
+                exportScene();
+            }
+        } else if (binding.equals("Console")) {
+            if (isPressed) {
+                hud.toggleVisibility();
+                hud.consoleAppend("toggle");
+            }
+        } else if (binding.equals("ScrollUp")) {
+            if (isPressed) {
+                hud.scrollUp();
+            }
+        } else if (binding.equals("ScrollDown")) {
+            if (isPressed) {
+                hud.scrollDown();
+            }
+        } else if (binding.equals("Profiler")) {
+            if (isPressed) {
+                profilerPanel.toggle();
+            }
+        } else if (binding.equals("ExportProfile")) {
+            if (isPressed) {
+                exportProfile();
+            }
+        }
+
+    }
+
+    private void setUpKeys() {
+        inputManager.addMapping("Left", new KeyTrigger(KeyInput.KEY_A));
+        inputManager.addMapping("Right", new KeyTrigger(KeyInput.KEY_D));
+        inputManager.addMapping("Up", new KeyTrigger(KeyInput.KEY_W));
+        inputManager.addMapping("Down", new KeyTrigger(KeyInput.KEY_S));
+        inputManager.addMapping("Jump", new KeyTrigger(KeyInput.KEY_SPACE));
+
+        inputManager.addMapping("Shoot", new MouseButtonTrigger(MouseInput.BUTTON_LEFT));
+        inputManager.addMapping("Interact", new KeyTrigger(KeyInput.KEY_E));
+        inputManager.addMapping("Interact2", new KeyTrigger(KeyInput.KEY_R));
+        inputManager.addMapping("Fire", new KeyTrigger(KeyInput.KEY_F));
+        inputManager.addMapping("Save", new KeyTrigger(KeyInput.KEY_P));
+        inputManager.addMapping("Load", new KeyTrigger(KeyInput.KEY_L));
+        inputManager.addMapping("ExportScene", new KeyTrigger(KeyInput.KEY_O));
+        inputManager.addMapping("Console", new KeyTrigger(KeyInput.KEY_1));
+        inputManager.addMapping("ScrollUp", new KeyTrigger(KeyInput.KEY_PGUP));
+        inputManager.addMapping("ScrollDown", new KeyTrigger(KeyInput.KEY_PGDN));
+        inputManager.addMapping("Profiler", new KeyTrigger(KeyInput.KEY_2));
+        inputManager.addMapping("ExportProfile", new KeyTrigger(KeyInput.KEY_3));
+
+        inputManager.addListener(this, "Left");
+        inputManager.addListener(this, "Right");
+        inputManager.addListener(this, "Up");
+        inputManager.addListener(this, "Down");
+        inputManager.addListener(this, "Jump");
+        inputManager.addListener(this, "Shoot");
+        inputManager.addListener(this, "Interact");
+        inputManager.addListener(this, "Interact2");
+        inputManager.addListener(this, "Fire");
+        inputManager.addListener(this, "Save");
+        inputManager.addListener(this, "Load");
+        inputManager.addListener(this, "ExportScene");
+        inputManager.addListener(this, "Console");
+        inputManager.addListener(this, "ScrollUp");
+        inputManager.addListener(this, "ScrollDown");
+        inputManager.addListener(this, "Profiler");
+        inputManager.addListener(this, "ExportProfile");
+    }
+}
\ No newline at end of file
@@ -0,0 +1,11 @@
+package nu.takacs.gametest.ai;
+
+public enum AiState {
+    CREATED, WALKING, IDLE;
+
+    private static final AiState[] VALUES = values();
+
+    public static AiState fromOrdinal(final int ordinal) {
+        return VALUES[ordinal];
+    }
+}
@@ -0,0 +1,440 @@
+package nu.takacs.gametest.ai;
+
+import com.jme3.app.Application;
+import com.jme3.app.state.BaseAppState;
+import com.jme3.math.Vector3f;
+import nu.takacs.gametest.control.AiControl;
+import nu.takacs.gametest.nav.Path;
+import nu.takacs.gametest.nav.PathService;
+import nu.takacs.gametest.time.GameTimerState;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs the wander AI of every NPC in one batched pass over primitive arrays.
+ * <p>
+ * Each agent is a slot holding its state ordinal, the game time left in that state,
+ * its walking direction and its own random generator state. The decide pass only
+ * reads and writes those arrays, so with enough agents it is split across the
+ * fork-join pool. Only agents whose state changed are handed to their
+ * {@link AiControl} afterwards, on the render thread, to touch the character and
+ * animation controls.
+ * <p>
+ * Given a {@link PathService}, a wandering agent asks for a path to a spot
+ * {@link #WANDER_DISTANCE} away in its chosen direction and stays put until the path
+ * is found, then follows it waypoint by waypoint. Without one, it walks straight.
+ * <p>
+ * Dormant agents are skipped altogether: their timers stand still and they ask for
+ * no paths, until they wake up and pick up their state where they left it.
+ */
+public class AiSystemState extends BaseAppState {
+
+    public static final float STATE_DURATION = 3.0f;
+    public static final float WANDER_DISTANCE = 32.0f;
+
+    // how long an agent may spend following a path before giving up on it
+    private static final float PATH_TIMEOUT = 20.0f;
+    private static final float WAYPOINT_RADIUS = 2.0f;
+    // cosine of the smallest turn worth re-steering for
+    private static final float STEER_COSINE = 0.999f;
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int PARALLEL_THRESHOLD = 4096;
+    private static final int CHUNK_SIZE = 1024;
+
+    private static final byte CREATED = (byte) AiState.CREATED.ordinal();
+    private static final byte WALKING = (byte) AiState.WALKING.ordinal();
+    private static final byte IDLE = (byte) AiState.IDLE.ordinal();
+
+    private final GameTimerState timers;
+    private long nextSeed;
+
+    private int count = 0;
+    private AiControl[] agents = new AiControl[INITIAL_CAPACITY];
+    private byte[] state = new byte[INITIAL_CAPACITY];
+    private float[] timeLeft = new float[INITIAL_CAPACITY];
+    private float[] directionX = new float[INITIAL_CAPACITY];
+    private float[] directionZ = new float[INITIAL_CAPACITY];
+    private long[] random = new long[INITIAL_CAPACITY];
+    private boolean[] changed = new boolean[INITIAL_CAPACITY];
+    private boolean[] dormant = new boolean[INITIAL_CAPACITY];
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private CompletableFuture<Path>[] pending = new CompletableFuture[INITIAL_CAPACITY];
+    private Path[] route = new Path[INITIAL_CAPACITY];
+    private int[] waypoint = new int[INITIAL_CAPACITY];
+
+    private final Vector3f goal = new Vector3f();
+
+    private boolean parallel = true;
+    private PathService paths;
+
+    public AiSystemState(final GameTimerState timers, final long seed) {
+        this.timers = timers;
+        this.nextSeed = seed;
+    }
+
+    /**
+     * Adds an agent in the CREATED state and returns its slot.
+     */
+    public int register(final AiControl agent) {
+        if (count == agents.length) {
+            grow();
+        }
+
+        final int slot = count++;
+
+        agents[slot] = agent;
+        state[slot] = CREATED;
+        timeLeft[slot] = 0.0f;
+        directionX[slot] = 0.0f;
+        directionZ[slot] = 0.0f;
+        random[slot] = mix(nextSeed++);
+        changed[slot] = false;
+        dormant[slot] = false;
+        pending[slot] = null;
+        route[slot] = null;
+        waypoint[slot] = 0;
+
+        return slot;
+    }
+
+    /**
+     * Removes the agent in the slot. The last agent moves into the freed slot and is
+     * told about its new slot.
+     */
+    public void unregister(final int slot) {
+        final int last = --count;
+
+        if (slot != last) {
+            agents[slot] = agents[last];
+            state[slot] = state[last];
+            timeLeft[slot] = timeLeft[last];
+            directionX[slot] = directionX[last];
+            directionZ[slot] = directionZ[last];
+            random[slot] = random[last];
+            changed[slot] = changed[last];
+            dormant[slot] = dormant[last];
+            pending[slot] = pending[last];
+            route[slot] = route[last];
+            waypoint[slot] = waypoint[last];
+
+            agents[slot].setSlot(slot);
+        }
+
+        agents[last] = null;
+        pending[last] = null;
+        route[last] = null;
+    }
+
+    public int getAgentCount() {
+        return count;
+    }
+
+    public AiState getState(final int slot) {
+        return AiState.fromOrdinal(state[slot]);
+    }
+
+    public float getTimeLeft(final int slot) {
+        return timeLeft[slot];
+    }
+
+    public float getDirectionX(final int slot) {
+        return directionX[slot];
+    }
+
+    public float getDirectionZ(final int slot) {
+        return directionZ[slot];
+    }
+
+    /**
+     * Puts a saved agent back where it was. Its control is told about the state on the
+     * next update, without the state's timer starting over.
+     */
+    public void restore(final int slot, final AiState toState, final float secondsLeft,
+                        final float dirX, final float dirZ) {
+        state[slot] = (byte) toState.ordinal();
+        timeLeft[slot] = secondsLeft;
+        directionX[slot] = dirX;
+        directionZ[slot] = dirZ;
+        changed[slot] = toState != AiState.CREATED;
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public void setParallel(final boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    public boolean isDormant(final int slot) {
+        return dormant[slot];
+    }
+
+    /**
+     * Takes the agent out of the updates, dropping the path it is waiting for or
+     * following, or puts it back. A woken agent is told its state again, so a walk
+     * starts over with a fresh path.
+     */
+    public void setDormant(final int slot, final boolean asleep) {
+        if (dormant[slot] == asleep) {
+            return;
+        }
+
+        dormant[slot] = asleep;
+        pending[slot] = null;
+        route[slot] = null;
+        changed[slot] = !asleep && state[slot] != CREATED;
+    }
+
+    /**
+     * Sets where agents get their paths from, or {@code null} to have them walk straight.
+     */
+    public void setPathService(final PathService paths) {
+        this.paths = paths;
+    }
+
+    @Override
+    public void update(final float tpf) {
+        if (timers.isPaused() || count == 0) {
+            return;
+        }
+
+        final float dt = tpf * timers.getTimeScale();
+
+        if (parallel && count >= PARALLEL_THRESHOLD) {
+            ForkJoinPool.commonPool().invoke(new DecideTask(0, count, dt));
+        } else {
+            decide(0, count, dt);
+        }
+
+        for (int i = 0; i < count; ++i) {
+            if (dormant[i]) {
+                continue;
+            }
+
+            if (changed[i]) {
+                changed[i] = false;
+                pending[i] = null;
+                route[i] = null;
+
+                if (state[i] == WALKING && requestPath(i)) {
+                    continue;
+                }
+
+                agents[i].transition(AiState.fromOrdinal(state[i]), directionX[i], directionZ[i]);
+            } else if (pending[i] != null) {
+                if (pending[i].isDone()) {
+                    startRoute(i);
+                }
+            } else if (route[i] != null) {
+                followRoute(i);
+            }
+        }
+    }
+
+    /**
+     * Asks for a path for a newly wandering agent, holding off its walk until it arrives.
+     * Returns false if the agent should just walk straight.
+     */
+    private boolean requestPath(final int slot) {
+        final var location = paths == null ? null : agents[slot].getLocation();
+
+        if (location == null) {
+            return false;
+        }
+
+        goal.set(directionX[slot], 0.0f, directionZ[slot])
+                .multLocal(WANDER_DISTANCE)
+                .addLocal(location);
+
+        pending[slot] = paths.findPath(location, goal);
+        return true;
+    }
+
+    private void startRoute(final int slot) {
+        final var search = pending[slot];
+        pending[slot] = null;
+
+        final var path = search.isCompletedExceptionally() ? Path.NONE : search.getNow(Path.NONE);
+
+        if (!path.isFound()) {
+            stop(slot);
+            return;
+        }
+
+        route[slot] = path;
+        waypoint[slot] = 0;
+        timeLeft[slot] = PATH_TIMEOUT;
+
+        aim(slot, agents[slot].getLocation());
+        agents[slot].transition(AiState.WALKING, directionX[slot], directionZ[slot]);
+    }
+
+    private void followRoute(final int slot) {
+        final var location = agents[slot].getLocation();
+
+        if (location == null) {
+            return;
+        }
+
+        final var path = route[slot];
+        int point = waypoint[slot];
+
+        while (distanceSquared(path, point, location) <= WAYPOINT_RADIUS * WAYPOINT_RADIUS) {
+            if (++point == path.getPointCount()) {
+                stop(slot);
+                return;
+            }
+        }
+
+        waypoint[slot] = point;
+
+        final float oldX = directionX[slot];
+        final float oldZ = directionZ[slot];
+
+        aim(slot, location);
+
+        if (oldX * directionX[slot] + oldZ * directionZ[slot] < STEER_COSINE) {
+            agents[slot].steer(directionX[slot], directionZ[slot]);
+        }
+    }
+
+    /**
+     * Points the agent at its current waypoint.
+     */
+    private void aim(final int slot, final Vector3f location) {
+        final var path = route[slot];
+        final int point = waypoint[slot];
+
+        final float x = path.getX(point) - location.x;
+        final float z = path.getZ(point) - location.z;
+        final float length = (float) Math.sqrt(x * x + z * z);
+
+        if (length > 0.0f) {
+            directionX[slot] = x / length;
+            directionZ[slot] = z / length;
+        }
+    }
+
+    /**
+     * Ends the agent's walk early, for a fresh {@link #STATE_DURATION} of idling.
+     */
+    private void stop(final int slot) {
+        route[slot] = null;
+        state[slot] = IDLE;
+        timeLeft[slot] = STATE_DURATION;
+
+        agents[slot].transition(AiState.IDLE, directionX[slot], directionZ[slot]);
+    }
+
+    private static float distanceSquared(final Path path, final int point, final Vector3f location) {
+        final float x = path.getX(point) - location.x;
+        final float z = path.getZ(point) - location.z;
+
+        return x * x + z * z;
+    }
+
+    private void decide(final int from, final int to, final float dt) {
+        for (int i = from; i < to; ++i) {
+            if (dormant[i]) {
+                continue;
+            }
+
+            final byte current = state[i];
+
+            if (current != CREATED) {
+                final float left = timeLeft[i] - dt;
+
+                if (left > 0.0f) {
+                    timeLeft[i] = left;
+                    continue;
+                }
+            }
+
+            if (current == WALKING) {
+                state[i] = IDLE;
+            } else {
+                state[i] = WALKING;
+
+                final float x = nextFloat(i) * 2 - 1;
+                final float z = nextFloat(i) * 2 - 1;
+                final float length = (float) Math.sqrt(x * x + z * z);
+
+                directionX[i] = length > 0.0f ? x / length : 1.0f;
+                directionZ[i] = length > 0.0f ? z / length : 0.0f;
+            }
+
+            timeLeft[i] = STATE_DURATION;
+            changed[i] = true;
+        }
+    }
+
+    private float nextFloat(final int slot) {
+        final long value = mix(random[slot] += 0x9E3779B97F4A7C15L);
+        return (value >>> 40) * 0x1.0p-24f;
+    }
+
+    // splitmix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private void grow() {
+        final int capacity = agents.length * 2;
+
+        agents = Arrays.copyOf(agents, capacity);
+        state = Arrays.copyOf(state, capacity);
+        timeLeft = Arrays.copyOf(timeLeft, capacity);
+        directionX = Arrays.copyOf(directionX, capacity);
+        directionZ = Arrays.copyOf(directionZ, capacity);
+        random = Arrays.copyOf(random, capacity);
+        changed = Arrays.copyOf(changed, capacity);
+        dormant = Arrays.copyOf(dormant, capacity);
+        pending = Arrays.copyOf(pending, capacity);
+        route = Arrays.copyOf(route, capacity);
+        waypoint = Arrays.copyOf(waypoint, capacity);
+    }
+
+    private final class DecideTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final float dt;
+
+        private DecideTask(final int from, final int to, final float dt) {
+            this.from = from;
+            this.to = to;
+            this.dt = dt;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK_SIZE) {
+                decide(from, to, dt);
+                return;
+            }
+
+            final int middle = (from + to) >>> 1;
+            invokeAll(new DecideTask(from, middle, dt), new DecideTask(middle, to, dt));
+        }
+    }
+
+    @Override
+    protected void initialize(final Application app) {}
+
+    @Override
+    protected void cleanup(final Application app) {}
+
+    @Override
+    protected void onEnable() {}
+
+    @Override
+    protected void onDisable() {}
+}
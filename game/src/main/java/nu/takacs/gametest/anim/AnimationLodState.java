@@ -0,0 +1,183 @@
+package nu.takacs.gametest.anim;
+
+import com.jme3.anim.AnimComposer;
+import com.jme3.anim.SkinningControl;
+import com.jme3.app.Application;
+import com.jme3.app.state.BaseAppState;
+import com.jme3.renderer.Camera;
+import com.jme3.scene.Spatial;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Animation level of detail for skinned characters, by distance to the camera:
+ * <ul>
+ *     <li>near: animated and skinned every frame</li>
+ *     <li>middle: animated and skinned every {@code reducedInterval} frames, making
+ *     up the skipped time so the animation keeps its speed</li>
+ *     <li>far: the pose is frozen and nothing is updated</li>
+ * </ul>
+ * Reduced-rate characters are spread over the frames by a phase they are given when
+ * registered, so they don't all update on the same frame, and keep their turn as
+ * others come and go.
+ */
+public class AnimationLodState extends BaseAppState {
+
+    public enum Tier {
+        NEAR, REDUCED, FROZEN
+    }
+
+    private final float nearDistanceSquared;
+    private final float farDistanceSquared;
+    private final int reducedInterval;
+
+    private final List<Entry> entries = new ArrayList<>();
+    private final Map<Spatial, Entry> entriesByCharacter = new IdentityHashMap<>();
+    private Camera camera;
+    private long frame = 0;
+    private int nextPhase = 0;
+
+    public AnimationLodState(final float nearDistance,
+                             final float farDistance,
+                             final int reducedInterval) {
+        this.nearDistanceSquared = nearDistance * nearDistance;
+        this.farDistanceSquared = farDistance * farDistance;
+        this.reducedInterval = Math.max(1, reducedInterval);
+    }
+
+    /**
+     * @param character the spatial whose position decides the tier
+     * @param model     the child carrying the {@link AnimComposer} and {@link SkinningControl}
+     */
+    public void register(final Spatial character, final Spatial model) {
+        final var entry = new Entry(character,
+                model.getControl(AnimComposer.class),
+                model.getControl(SkinningControl.class),
+                nextPhase);
+
+        nextPhase = (nextPhase + 1) % reducedInterval;
+
+        entry.index = entries.size();
+        entries.add(entry);
+        entriesByCharacter.put(character, entry);
+    }
+
+    public void unregister(final Spatial character) {
+        final var entry = entriesByCharacter.remove(character);
+
+        if (entry == null) {
+            return;
+        }
+
+        final var last = entries.remove(entries.size() - 1);
+
+        if (last != entry) {
+            entries.set(entry.index, last);
+            last.index = entry.index;
+        }
+    }
+
+    public int count(final Tier tier) {
+        int count = 0;
+        for (int i = 0; i < entries.size(); ++i) {
+            if (entries.get(i).tier == tier) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void update(final float tpf) {
+        ++frame;
+
+        final var cameraLocation = camera.getLocation();
+
+        for (int i = 0, n = entries.size(); i < n; ++i) {
+            final var entry = entries.get(i);
+            final float distanceSquared =
+                    entry.character.getWorldTranslation().distanceSquared(cameraLocation);
+
+            if (distanceSquared < nearDistanceSquared) {
+                entry.tier = Tier.NEAR;
+                entry.skipped = 0.0f;
+                entry.setAnimating(true, 1.0f);
+            } else if (distanceSquared < farDistanceSquared) {
+                entry.tier = Tier.REDUCED;
+
+                if ((frame + entry.phase) % reducedInterval == 0 && tpf > 0.0f) {
+                    // this frame's update advances by all the time skipped since the last one
+                    entry.setAnimating(true, (entry.skipped + tpf) / tpf);
+                    entry.skipped = 0.0f;
+                } else {
+                    entry.skipped += tpf;
+                    entry.setAnimating(false, 1.0f);
+                }
+            } else {
+                entry.tier = Tier.FROZEN;
+                entry.skipped = 0.0f;
+                entry.setAnimating(false, 1.0f);
+            }
+        }
+    }
+
+    @Override
+    protected void initialize(final Application app) {
+        camera = app.getCamera();
+    }
+
+    @Override
+    protected void cleanup(final Application app) {
+        for (int i = 0; i < entries.size(); ++i) {
+            entries.get(i).setAnimating(true, 1.0f);
+        }
+        entries.clear();
+        entriesByCharacter.clear();
+    }
+
+    @Override
+    protected void onEnable() {}
+
+    @Override
+    protected void onDisable() {
+        for (int i = 0; i < entries.size(); ++i) {
+            entries.get(i).setAnimating(true, 1.0f);
+        }
+    }
+
+    private static final class Entry {
+        private final Spatial character;
+        private final AnimComposer animComposer;
+        private final SkinningControl skinningControl;
+        // which of the reduced-rate frames this character updates on
+        private final int phase;
+
+        private int index;
+        private Tier tier = Tier.NEAR;
+        private float skipped = 0.0f;
+
+        private Entry(final Spatial character,
+                      final AnimComposer animComposer,
+                      final SkinningControl skinningControl,
+                      final int phase) {
+            this.character = character;
+            this.animComposer = animComposer;
+            this.skinningControl = skinningControl;
+            this.phase = phase;
+        }
+
+        private void setAnimating(final boolean animating, final float speed) {
+            if (animComposer != null) {
+                animComposer.setEnabled(animating);
+                animComposer.setGlobalSpeed(speed);
+            }
+
+            if (skinningControl != null) {
+                skinningControl.setEnabled(animating);
+            }
+        }
+    }
+}
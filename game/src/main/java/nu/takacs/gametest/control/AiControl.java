@@ -0,0 +1,212 @@
+package nu.takacs.gametest.control;
+
+import com.jme3.anim.AnimComposer;
+import com.jme3.bullet.control.BetterCharacterControl;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.ViewPort;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.control.AbstractControl;
+import nu.takacs.gametest.ai.AiState;
+import nu.takacs.gametest.ai.AiSystemState;
+import nu.takacs.gametest.entity.EntityRegistry;
+import nu.takacs.gametest.jfr.AiTransitionEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An NPC's seat in the {@link AiSystemState}. The system decides what every NPC
+ * does; this control only carries out transitions on the character and animation
+ * controls, which it looks up once when attached. If given an {@link EntityRegistry},
+ * it keeps the NPC's AI state component there up to date.
+ */
+public class AiControl extends AbstractControl {
+    //TODO: implement saveable
+    private static final Logger LOG = LoggerFactory.getLogger(AiControl.class);
+
+    private final float WALKING_SPEED = 2.0f;
+
+    private final AiSystemState aiSystem;
+    private final EntityRegistry entities;
+    private final Vector3f movement = new Vector3f();
+
+    private int slot = -1;
+    private int entityId = -1;
+    private BetterCharacterControl characterControl;
+    private AnimComposer animComposer;
+
+    public AiControl(final AiSystemState aiSystem) {
+        this(aiSystem, null);
+    }
+
+    public AiControl(final AiSystemState aiSystem, final EntityRegistry entities) {
+        this.aiSystem = aiSystem;
+        this.entities = entities;
+    }
+
+    @Override
+    public void setSpatial(final Spatial spatial) {
+        if (this.spatial != null && slot != -1) {
+            aiSystem.unregister(slot);
+            slot = -1;
+        }
+
+        if (entities != null && entities.isAlive(entityId)) {
+            entities.removeAi(entityId);
+        }
+
+        super.setSpatial(spatial);
+
+        if (spatial == null) {
+            characterControl = null;
+            animComposer = null;
+            entityId = -1;
+            return;
+        }
+
+        characterControl = spatial.getControl(BetterCharacterControl.class);
+
+        final var model = ((Node) spatial).getChild("npcModel");
+        animComposer = model == null ? null : model.getControl(AnimComposer.class);
+
+        slot = aiSystem.register(this);
+
+        if (!isEnabled()) {
+            aiSystem.setDormant(slot, true);
+        }
+
+        if (entities != null) {
+            entityId = EntityRegistry.idOf(spatial);
+
+            if (entities.isAlive(entityId)) {
+                entities.setAiState(entityId, AiState.CREATED);
+            }
+        }
+    }
+
+    public void setSlot(final int slot) {
+        this.slot = slot;
+    }
+
+    public int getSlot() {
+        return slot;
+    }
+
+    /**
+     * Disabling the control, as the entity registry does to a dormant NPC, also takes
+     * the NPC out of the AI system's updates.
+     */
+    @Override
+    public void setEnabled(final boolean enabled) {
+        super.setEnabled(enabled);
+
+        if (slot != -1) {
+            aiSystem.setDormant(slot, !enabled);
+        }
+    }
+
+    public AiState getState() {
+        return slot == -1 ? AiState.CREATED : aiSystem.getState(slot);
+    }
+
+    public float getTimeLeft() {
+        return slot == -1 ? 0.0f : aiSystem.getTimeLeft(slot);
+    }
+
+    public float getDirectionX() {
+        return slot == -1 ? 0.0f : aiSystem.getDirectionX(slot);
+    }
+
+    public float getDirectionZ() {
+        return slot == -1 ? 0.0f : aiSystem.getDirectionZ(slot);
+    }
+
+    /**
+     * Returns the NPC's world location, or {@code null} while not attached.
+     */
+    public Vector3f getLocation() {
+        return spatial == null ? null : spatial.getWorldTranslation();
+    }
+
+    /**
+     * Turns a walking NPC towards a new direction, without starting its walk over.
+     */
+    public void steer(final float directionX, final float directionZ) {
+        setWalkingDirection(directionX, directionZ);
+    }
+
+    /**
+     * Resumes a saved state. Only valid while the control is attached.
+     */
+    public void restore(final AiState state, final float timeLeft,
+                        final float directionX, final float directionZ) {
+        aiSystem.restore(slot, state, timeLeft, directionX, directionZ);
+    }
+
+    /**
+     * Called by the AI system when it has moved this NPC into a new state.
+     */
+    public void transition(final AiState toState, final float directionX, final float directionZ) {
+        final var event = new AiTransitionEvent();
+        event.begin();
+
+        if (entities != null && entities.isAlive(entityId)) {
+            entities.setAiState(entityId, toState);
+        }
+
+        switch (toState) {
+            case WALKING:
+                //setAction("Dodge");
+                setAnimationAction("Walk");
+                setWalkingDirection(directionX, directionZ);
+                break;
+
+            case IDLE:
+                //setAction("Dodge");
+                setAnimationAction("stand"); //TODO: change
+                setStandStill();
+                break;
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.slot = slot;
+            event.toState = toState.name();
+            event.commit();
+        }
+    }
+
+    private void setAnimationAction(final String action) {
+        if (animComposer != null) {
+            animComposer.setCurrentAction(action);
+        }
+    }
+
+    private void setWalkingDirection(final float directionX, final float directionZ) {
+        if (characterControl == null) {
+            return;
+        }
+
+        movement.set(directionX, 0.0f, directionZ).multLocal(WALKING_SPEED);
+
+        characterControl.setWalkDirection(movement);
+        characterControl.setViewDirection(movement);
+    }
+
+    private void setStandStill() {
+        if (characterControl == null) {
+            return;
+        }
+
+        characterControl.setWalkDirection(Vector3f.ZERO);
+    }
+
+    @Override
+    protected void controlUpdate(final float tpf) {
+    }
+
+    @Override
+    protected void controlRender(final RenderManager rm, final ViewPort vp) {
+    }
+}
@@ -0,0 +1,57 @@
+package nu.takacs.gametest.control;
+
+import com.jme3.material.Material;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.ViewPort;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.control.AbstractControl;
+
+/**
+ * Colors the spatial by health. Register it as a health listener on the
+ * {@link HealthDestructionControl} it should follow; it does no per-frame work and
+ * only swaps the spatial's material when the health moves into another palette bucket.
+ */
+public class HealthColorControl extends AbstractControl implements HealthDestructionControl.HealthListener {
+
+    private final HealthColorPalette palette;
+    private int health = 100;
+    private Material current;
+
+    public HealthColorControl(final HealthColorPalette palette) {
+        this.palette = palette;
+    }
+
+    @Override
+    public void onHealthChanged(final int health) {
+        this.health = health;
+        applyMaterial();
+    }
+
+    @Override
+    public void setSpatial(final Spatial spatial) {
+        super.setSpatial(spatial);
+        current = null;
+        applyMaterial();
+    }
+
+    private void applyMaterial() {
+        if (spatial == null) {
+            return;
+        }
+
+        final var material = palette.getMaterial(health);
+
+        if (material != current) {
+            current = material;
+            spatial.setMaterial(material);
+        }
+    }
+
+    @Override
+    protected void controlUpdate(final float tpf) {
+    }
+
+    @Override
+    protected void controlRender(final RenderManager rm, final ViewPort vp) {
+    }
+}
@@ -0,0 +1,59 @@
+package nu.takacs.gametest.control;
+
+import com.jme3.app.LegacyApplication;
+import com.jme3.material.Material;
+import com.jme3.math.ColorRGBA;
+
+/**
+ * A small set of pre-built materials going from green (full health) to red (dead),
+ * shared by every spatial that shows its health as a color. An instanced palette's
+ * materials are only for geometries under an {@link com.jme3.scene.instancing.InstancedNode},
+ * which draws each of them in one batch.
+ */
+public class HealthColorPalette {
+    private static final int MAX_HEALTH = 100;
+
+    private final Material[] materials;
+
+    public HealthColorPalette(final LegacyApplication application, final int buckets) {
+        this(application, buckets, false);
+    }
+
+    public HealthColorPalette(final LegacyApplication application,
+                              final int buckets,
+                              final boolean instanced) {
+        if (buckets < 2) {
+            throw new IllegalArgumentException("Need at least two buckets, got " + buckets);
+        }
+
+        materials = new Material[buckets];
+
+        for (int i = 0; i < buckets; ++i) {
+            final float health = (float) i / (buckets - 1);
+            final var color = new ColorRGBA(1.0f - health, health, 0.0f, 1.0f);
+
+            final var material = new Material(application.getAssetManager(),
+                    "Common/MatDefs/Light/Lighting.j3md");
+            material.setBoolean("UseMaterialColors", true);
+            material.setColor("Ambient", color);
+            material.setColor("Diffuse", color);
+            material.setBoolean("UseInstancing", instanced);
+
+            materials[i] = material;
+        }
+    }
+
+    public Material getMaterial(final int health) {
+        final var clamped = Math.min(Math.max(health, 0), MAX_HEALTH);
+
+        return materials[Math.round(clamped * (materials.length - 1) / (float) MAX_HEALTH)];
+    }
+
+    public Material getBucketMaterial(final int bucket) {
+        return materials[bucket];
+    }
+
+    public int getBucketCount() {
+        return materials.length;
+    }
+}
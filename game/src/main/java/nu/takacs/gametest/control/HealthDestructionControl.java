@@ -0,0 +1,79 @@
+package nu.takacs.gametest.control;
+
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.ViewPort;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.control.AbstractControl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Health of a destructible spatial. It doesn't blow up by itself when its health runs
+ * out; whoever deals the damage decides when it goes off, by calling {@link #blowUp}.
+ */
+public class HealthDestructionControl extends AbstractControl {
+
+    public interface HealthListener {
+        void onHealthChanged(int health);
+    }
+
+    private Consumer<Spatial> onBlowup;
+    private final List<HealthListener> healthListeners = new ArrayList<>(1);
+    private int health = 100;
+
+    public HealthDestructionControl(final Consumer<Spatial> onBlowup) {
+        this.onBlowup = onBlowup;
+
+    }
+
+    /**
+     * Removes the spatial from the scene and calls back.
+     */
+    public void blowUp() {
+        final var target = spatial;
+
+        target.removeFromParent();
+        onBlowup.accept(target);
+    }
+
+    @Override
+    protected void controlUpdate(final float tpf) {}
+
+    public void setOnBlowup(final Consumer<Spatial> onBlowup) {
+        this.onBlowup = onBlowup;
+    }
+
+    public int getHealth() {
+        return health;
+    }
+
+    public void setHealth(final int health) {
+        if (this.health == health) {
+            return;
+        }
+
+        this.health = health;
+
+        for (int i = 0; i < healthListeners.size(); ++i) {
+            healthListeners.get(i).onHealthChanged(health);
+        }
+    }
+
+    /**
+     * Registers a listener that is called whenever the health value actually changes,
+     * and once right away with the current value.
+     */
+    public void addHealthListener(final HealthListener listener) {
+        healthListeners.add(listener);
+        listener.onHealthChanged(health);
+    }
+
+    public void removeHealthListener(final HealthListener listener) {
+        healthListeners.remove(listener);
+    }
+
+    @Override
+    protected void controlRender(final RenderManager rm, final ViewPort vp) {}
+}
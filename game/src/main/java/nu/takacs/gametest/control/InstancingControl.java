@@ -0,0 +1,47 @@
+package nu.takacs.gametest.control;
+
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.ViewPort;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.control.AbstractControl;
+import com.jme3.scene.instancing.InstancedNode;
+
+/**
+ * Groups the geometries newly attached to an {@link InstancedNode} into its instanced
+ * batches. Grouping walks the whole subtree, so it runs at most once a frame, and only
+ * after {@link #markChanged()}. Add it to the node, which runs it before updating its
+ * children.
+ */
+public class InstancingControl extends AbstractControl {
+
+    private boolean changed = false;
+
+    /**
+     * Asks for the node's geometries to be grouped on its next update. Call it when
+     * attaching to the node; detaching takes care of itself.
+     */
+    public void markChanged() {
+        changed = true;
+    }
+
+    @Override
+    public void setSpatial(final Spatial spatial) {
+        if (spatial != null && !(spatial instanceof InstancedNode)) {
+            throw new IllegalArgumentException("Not an InstancedNode: " + spatial);
+        }
+
+        super.setSpatial(spatial);
+    }
+
+    @Override
+    protected void controlUpdate(final float tpf) {
+        if (changed) {
+            changed = false;
+            ((InstancedNode) spatial).instance();
+        }
+    }
+
+    @Override
+    protected void controlRender(final RenderManager rm, final ViewPort vp) {
+    }
+}
@@ -0,0 +1,44 @@
+package nu.takacs.gametest.control;
+
+import com.jme3.bullet.control.BetterCharacterControl;
+import com.jme3.bullet.objects.PhysicsRigidBody;
+
+/**
+ * {@link BetterCharacterControl} that exposes its underlying rigid body, so NPCs
+ * can be registered with systems that work on bodies directly.
+ * <p>
+ * The base class casts a ray on every physics tick to find out whether the character
+ * stands on the ground, allocating the list of hits each time. Only jumping needs to
+ * know, so NPCs cast it when asked instead.
+ */
+public class NpcCharacterControl extends BetterCharacterControl {
+
+    public NpcCharacterControl(final float radius, final float height, final float mass) {
+        super(radius, height, mass);
+    }
+
+    public PhysicsRigidBody getRigidBody() {
+        return rigidBody;
+    }
+
+    @Override
+    protected void checkOnGround() {}
+
+    @Override
+    public boolean isOnGround() {
+        castGroundRay();
+        return onGround;
+    }
+
+    @Override
+    public void jump() {
+        castGroundRay();
+        super.jump();
+    }
+
+    private void castGroundRay() {
+        if (getPhysicsSpace() != null) {
+            super.checkOnGround();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package nu.takacs.gametest.control;
+
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.ViewPort;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.control.AbstractControl;
+import nu.takacs.gametest.time.GameTimerState;
+import nu.takacs.gametest.time.TimerWheel;
+
+import java.util.function.Consumer;
+
+/**
+ * Removes the spatial and calls back after a fixed amount of game time. The fuse
+ * is a timer on the {@link GameTimerState}, started when the control is added to
+ * a spatial and cancelled if it is removed before going off.
+ */
+public class TimedDestructionControl extends AbstractControl {
+
+    private final GameTimerState timers;
+    private final Consumer<Spatial> onBlowup;
+    private final long ttlMillis;
+
+    private TimerWheel.Timeout fuse;
+
+    public TimedDestructionControl(final GameTimerState timers,
+                                   final Consumer<Spatial> onBlowup,
+                                   final Long ttlMillis) {
+        this.timers = timers;
+        this.onBlowup = onBlowup;
+        this.ttlMillis = ttlMillis;
+    }
+
+    @Override
+    public void setSpatial(final Spatial spatial) {
+        super.setSpatial(spatial);
+
+        if (fuse != null) {
+            fuse.cancel();
+            fuse = null;
+        }
+
+        if (spatial != null) {
+            fuse = timers.scheduleMillis(ttlMillis, () -> blowUp(spatial));
+        }
+    }
+
+    public float getRemainingSeconds() {
+        return fuse == null ? 0.0f : fuse.getRemainingSeconds();
+    }
+
+    private void blowUp(final Spatial target) {
+        fuse = null;
+        target.removeFromParent();
+        onBlowup.accept(target);
+    }
+
+    @Override
+    protected void controlUpdate(final float tpf) {}
+
+    @Override
+    protected void controlRender(final RenderManager rm, final ViewPort vp) {}
+}
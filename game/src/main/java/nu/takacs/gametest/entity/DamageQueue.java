@@ -0,0 +1,224 @@
+package nu.takacs.gametest.entity;
+
+import com.jme3.app.Application;
+import com.jme3.app.state.BaseAppState;
+
+import java.util.Arrays;
+
+/**
+ * Damage to entities with a health component, as events that are resolved once per
+ * frame on the render thread.
+ * <p>
+ * Events can be added from any thread. Each update sums up the events per entity
+ * and applies them in one go, so a box hit by several blasts changes health once.
+ * Entities whose health runs out are queued for detonation rather than blowing up
+ * on the spot: every update detonates the oldest of them until its time budget, or
+ * its cap on detonations, is used up, and leaves the rest for later frames. A detonation may add damage of its
+ * own, which is resolved the frame after, so a chain reaction through a dense pile
+ * plays out over several frames instead of stalling one.
+ */
+public class DamageQueue extends BaseAppState {
+
+    private static final int INITIAL_CAPACITY = 64;
+    // however small the budget, the queue always moves
+    private static final int MIN_DETONATIONS_PER_FRAME = 1;
+
+    private final EntityRegistry entities;
+    private long budgetNanos;
+    private int maxDetonations = Integer.MAX_VALUE;
+
+    // guarded by this; entity id in the high half, amount in the low half
+    private long[] events = new long[INITIAL_CAPACITY];
+    private int eventCount = 0;
+    private long[] resolving = new long[INITIAL_CAPACITY];
+
+    // ring buffer of entity ids
+    private int[] detonations = new int[INITIAL_CAPACITY];
+    private int detonationHead = 0;
+    private int detonationCount = 0;
+
+    private int lastEventCount = 0;
+    private int lastDetonatedCount = 0;
+    private long deferredCount = 0;
+
+    public DamageQueue(final EntityRegistry entities, final long budgetNanos) {
+        this.entities = entities;
+        this.budgetNanos = budgetNanos;
+    }
+
+    /**
+     * Queues {@code amount} of damage to the entity for the next update. Safe to call
+     * from any thread.
+     */
+    public synchronized void add(final int id, final int amount) {
+        if (eventCount == events.length) {
+            events = Arrays.copyOf(events, events.length * 2);
+        }
+
+        events[eventCount++] = (long) id << 32 | (amount & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Queues the entity for detonation, whatever its health. Only call it on the render thread.
+     */
+    public void detonate(final int id) {
+        if (detonationCount == detonations.length) {
+            growDetonations();
+        }
+
+        detonations[(detonationHead + detonationCount) % detonations.length] = id;
+        ++detonationCount;
+    }
+
+    public long getBudgetNanos() {
+        return budgetNanos;
+    }
+
+    public void setBudgetNanos(final long budgetNanos) {
+        this.budgetNanos = budgetNanos;
+    }
+
+    public int getMaxDetonations() {
+        return maxDetonations;
+    }
+
+    /**
+     * Caps how many entities an update detonates. Unlike the time budget, a cap spreads
+     * a chain reaction the same way on every machine.
+     */
+    public void setMaxDetonations(final int maxDetonations) {
+        this.maxDetonations = maxDetonations;
+    }
+
+    public synchronized int getPendingEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * Returns the number of entities waiting to detonate.
+     */
+    public int getPendingDetonationCount() {
+        return detonationCount;
+    }
+
+    /**
+     * Returns how many damage events the last update resolved.
+     */
+    public int getLastEventCount() {
+        return lastEventCount;
+    }
+
+    /**
+     * Returns how many entities the last update detonated.
+     */
+    public int getLastDetonatedCount() {
+        return lastDetonatedCount;
+    }
+
+    /**
+     * Returns how many times, in total, an entity was left waiting for a later frame
+     * because the budget ran out. An entity that waits three frames counts three times.
+     */
+    public long getDeferredCount() {
+        return deferredCount;
+    }
+
+    @Override
+    public void update(final float tpf) {
+        resolveEvents();
+        runDetonations();
+    }
+
+    private void resolveEvents() {
+        final int count;
+
+        synchronized (this) {
+            count = eventCount;
+            lastEventCount = count;
+
+            if (count == 0) {
+                return;
+            }
+
+            // swap buffers so events added meanwhile wait for the next update
+            final long[] queued = events;
+            events = resolving.length >= queued.length ? resolving : new long[queued.length];
+            resolving = queued;
+            eventCount = 0;
+        }
+
+        // sorting brings each entity's events together, so they are applied as one
+        Arrays.sort(resolving, 0, count);
+
+        int i = 0;
+        while (i < count) {
+            final int id = (int) (resolving[i] >>> 32);
+            int total = 0;
+
+            while (i < count && (int) (resolving[i] >>> 32) == id) {
+                total += (int) resolving[i];
+                ++i;
+            }
+
+            // entities already out of health are waiting to detonate
+            if (total == 0 || !entities.isAlive(id)
+                    || !entities.has(id, EntityRegistry.HEALTH) || entities.getHealth(id) < 1) {
+                continue;
+            }
+
+            entities.damage(id, total);
+
+            if (entities.getHealth(id) < 1) {
+                detonate(id);
+            }
+        }
+    }
+
+    private void runDetonations() {
+        final long start = System.nanoTime();
+        int detonated = 0;
+
+        while (detonationCount > 0) {
+            if (detonated >= MIN_DETONATIONS_PER_FRAME
+                    && (detonated >= maxDetonations || System.nanoTime() - start >= budgetNanos)) {
+                break;
+            }
+
+            final int id = detonations[detonationHead];
+            detonationHead = (detonationHead + 1) % detonations.length;
+            --detonationCount;
+
+            // it may have been removed meanwhile, e.g. by loading a game
+            if (entities.isAlive(id) && entities.has(id, EntityRegistry.HEALTH)) {
+                entities.getHealthControl(id).blowUp();
+                ++detonated;
+            }
+        }
+
+        lastDetonatedCount = detonated;
+        deferredCount += detonationCount;
+    }
+
+    private void growDetonations() {
+        final int[] grown = new int[detonations.length * 2];
+
+        for (int i = 0; i < detonationCount; ++i) {
+            grown[i] = detonations[(detonationHead + i) % detonations.length];
+        }
+
+        detonations = grown;
+        detonationHead = 0;
+    }
+
+    @Override
+    protected void initialize(final Application app) {}
+
+    @Override
+    protected void cleanup(final Application app) {}
+
+    @Override
+    protected void onEnable() {}
+
+    @Override
+    protected void onDisable() {}
+}
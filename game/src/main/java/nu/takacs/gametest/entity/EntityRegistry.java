@@ -0,0 +1,465 @@
+package nu.takacs.gametest.entity;
+
+import com.jme3.app.Application;
+import com.jme3.app.state.BaseAppState;
+import com.jme3.bullet.control.PhysicsControl;
+import com.jme3.bullet.objects.PhysicsRigidBody;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.control.AbstractControl;
+import com.jme3.scene.control.Control;
+import nu.takacs.gametest.ai.AiState;
+import nu.takacs.gametest.control.HealthDestructionControl;
+import nu.takacs.gametest.physics.SpatialHashGrid;
+import nu.takacs.gametest.save.EntityType;
+import nu.takacs.gametest.time.GameTimerState;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Every grenade, box and NPC in the world, by integer id. Each entity has a bitmask
+ * of its type and the components it has, and the components are kept in one
+ * primitive array each, so systems can find "all NPCs" or "everything damageable
+ * around here" without walking the scene graph or looking up controls.
+ * <p>
+ * Ids carry a generation, so an id kept after its entity was destroyed is never
+ * mistaken for a new entity that reuses the slot; see {@link #isAlive}.
+ * <p>
+ * Positions are taken from the entities' rigid bodies. Bodies that Bullet reports
+ * as active are re-bucketed in a {@link SpatialHashGrid} every frame, sleeping
+ * ones stay where they are. The registry is changed on the render thread only;
+ * with parallel physics it can be read on physics ticks too, as those run while
+ * the frame renders.
+ */
+public class EntityRegistry extends BaseAppState {
+
+    public static final int GRENADE = 1 << EntityType.GRENADE.ordinal();
+    public static final int BOX = 1 << EntityType.BOX.ordinal();
+    public static final int NPC = 1 << EntityType.NPC.ordinal();
+
+    public static final int HEALTH = 1 << 8;
+    public static final int FUSE = 1 << 9;
+    public static final int AI = 1 << 10;
+    public static final int DORMANT = 1 << 11;
+
+    public static final String ID_USER_DATA = "entity_id";
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int INDEX_BITS = 20;
+    private static final int INDEX_MASK = (1 << INDEX_BITS) - 1;
+    private static final int GENERATION_MASK = (1 << (31 - INDEX_BITS)) - 1;
+
+    private final GameTimerState timers;
+    private final SpatialHashGrid<Slot> grid;
+    private final Vector3f location = new Vector3f();
+
+    // by index
+    private Slot[] slots = new Slot[INITIAL_CAPACITY];
+    private int[] generation = new int[INITIAL_CAPACITY];
+    private int[] mask = new int[INITIAL_CAPACITY];
+    private byte[] type = new byte[INITIAL_CAPACITY];
+    private Spatial[] spatials = new Spatial[INITIAL_CAPACITY];
+    private PhysicsRigidBody[] bodies = new PhysicsRigidBody[INITIAL_CAPACITY];
+    private boolean[] placed = new boolean[INITIAL_CAPACITY];
+    private float[] position = new float[INITIAL_CAPACITY * 3];
+    private double[] lastRelevant = new double[INITIAL_CAPACITY];
+    private int[] denseSlot = new int[INITIAL_CAPACITY];
+    private int[] health = new int[INITIAL_CAPACITY];
+    private HealthDestructionControl[] healthControls = new HealthDestructionControl[INITIAL_CAPACITY];
+    private double[] fuseDeadline = new double[INITIAL_CAPACITY];
+    private byte[] aiState = new byte[INITIAL_CAPACITY];
+
+    private int indexCount = 0;
+    private int[] freeIndices = new int[INITIAL_CAPACITY];
+    private int freeCount = 0;
+
+    // ids of the live entities, packed
+    private int[] dense = new int[INITIAL_CAPACITY];
+    private int count = 0;
+
+    // the query that is running, see query()
+    private int queryMask;
+    private IntConsumer queryVisitor;
+    private final Consumer<Slot> visitSlot = this::visitSlot;
+
+    public EntityRegistry(final GameTimerState timers, final float cellSize) {
+        this.timers = timers;
+        this.grid = new SpatialHashGrid<>(cellSize);
+    }
+
+    /**
+     * Returns the id stored on a spatial by {@link #create}, or -1.
+     */
+    public static int idOf(final Spatial spatial) {
+        final Integer id = spatial.getUserData(ID_USER_DATA);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Adds an entity without components and returns its id, which is also stored on
+     * the spatial. It is found by region queries from the next update on, once its
+     * body has been placed.
+     */
+    public int create(final EntityType entityType, final Spatial spatial, final PhysicsRigidBody body) {
+        final int index;
+
+        if (freeCount > 0) {
+            index = freeIndices[--freeCount];
+        } else {
+            if (indexCount == slots.length) {
+                grow();
+            }
+
+            if (indexCount > INDEX_MASK) {
+                throw new IllegalStateException("Too many entities: " + indexCount);
+            }
+
+            index = indexCount++;
+            slots[index] = new Slot(index);
+        }
+
+        final int id = generation[index] << INDEX_BITS | index;
+
+        mask[index] = 1 << entityType.ordinal();
+        type[index] = (byte) entityType.ordinal();
+        spatials[index] = spatial;
+        bodies[index] = body;
+        placed[index] = false;
+        lastRelevant[index] = timers.getTime();
+
+        denseSlot[index] = count;
+        dense[count++] = id;
+
+        spatial.setUserData(ID_USER_DATA, id);
+
+        return id;
+    }
+
+    /**
+     * Removes the entity and its components. Its id is not valid from here on. A dormant
+     * entity's controls are enabled again, so take it out of the physics space first.
+     */
+    public void destroy(final int id) {
+        if (!isAlive(id)) {
+            return;
+        }
+
+        final int index = id & INDEX_MASK;
+
+        if ((mask[index] & DORMANT) != 0) {
+            setDormant(id, false);
+        }
+
+        if (healthControls[index] != null) {
+            healthControls[index].removeHealthListener(slots[index]);
+            healthControls[index] = null;
+        }
+
+        if (placed[index]) {
+            grid.remove(slots[index]);
+            placed[index] = false;
+        }
+
+        final int last = dense[--count];
+        if (last != id) {
+            dense[denseSlot[index]] = last;
+            denseSlot[last & INDEX_MASK] = denseSlot[index];
+        }
+
+        spatials[index].setUserData(ID_USER_DATA, null);
+
+        mask[index] = 0;
+        spatials[index] = null;
+        bodies[index] = null;
+        generation[index] = (generation[index] + 1) & GENERATION_MASK;
+        freeIndices[freeCount++] = index;
+    }
+
+    public boolean isAlive(final int id) {
+        if (id < 0) {
+            return false;
+        }
+
+        final int index = id & INDEX_MASK;
+
+        return index < indexCount && mask[index] != 0 && generation[index] == id >>> INDEX_BITS;
+    }
+
+    /**
+     * Returns whether the entity has any of the type and component bits in {@code bits}.
+     */
+    public boolean has(final int id, final int bits) {
+        return (mask[id & INDEX_MASK] & bits) != 0;
+    }
+
+    public int getMask(final int id) {
+        return mask[id & INDEX_MASK];
+    }
+
+    public EntityType getType(final int id) {
+        return EntityType.fromOrdinal(type[id & INDEX_MASK]);
+    }
+
+    public Spatial getSpatial(final int id) {
+        return spatials[id & INDEX_MASK];
+    }
+
+    public PhysicsRigidBody getBody(final int id) {
+        return bodies[id & INDEX_MASK];
+    }
+
+    /**
+     * Gives the entity a health component that follows the control's health.
+     */
+    public void attachHealth(final int id, final HealthDestructionControl healthControl) {
+        final int index = id & INDEX_MASK;
+
+        mask[index] |= HEALTH;
+        healthControls[index] = healthControl;
+        healthControl.addHealthListener(slots[index]);
+    }
+
+    public HealthDestructionControl getHealthControl(final int id) {
+        return healthControls[id & INDEX_MASK];
+    }
+
+    public int getHealth(final int id) {
+        return health[id & INDEX_MASK];
+    }
+
+    /**
+     * Sets the entity's health through its health control, see {@link #damage}.
+     */
+    public void setHealth(final int id, final int newHealth) {
+        healthControls[id & INDEX_MASK].setHealth(newHealth);
+    }
+
+    /**
+     * Takes {@code amount} off the entity's health, through its health control so
+     * the control's listeners hear about it and it blows up at zero.
+     */
+    public void damage(final int id, final int amount) {
+        final int index = id & INDEX_MASK;
+        healthControls[index].setHealth(health[index] - amount);
+    }
+
+    /**
+     * Gives the entity a fuse that goes off {@code seconds} of game time from now.
+     * The fuse itself is timed by whoever set it; the registry only keeps track of it.
+     */
+    public void setFuse(final int id, final float seconds) {
+        final int index = id & INDEX_MASK;
+
+        mask[index] |= FUSE;
+        fuseDeadline[index] = timers.getTime() + seconds;
+    }
+
+    public float getFuseLeft(final int id) {
+        return (float) Math.max(0.0, fuseDeadline[id & INDEX_MASK] - timers.getTime());
+    }
+
+    public void setAiState(final int id, final AiState state) {
+        final int index = id & INDEX_MASK;
+
+        mask[index] |= AI;
+        aiState[index] = (byte) state.ordinal();
+    }
+
+    public void removeAi(final int id) {
+        mask[id & INDEX_MASK] &= ~AI;
+    }
+
+    public AiState getAiState(final int id) {
+        return AiState.fromOrdinal(aiState[id & INDEX_MASK]);
+    }
+
+    /**
+     * Takes the entity out of the simulation or puts it back. A dormant entity's controls
+     * are disabled, which takes its body out of the physics space and its controls out of
+     * the scene updates, and it stays where it was in the grid.
+     */
+    public void setDormant(final int id, final boolean dormant) {
+        final int index = id & INDEX_MASK;
+
+        if (((mask[index] & DORMANT) != 0) == dormant) {
+            return;
+        }
+
+        mask[index] ^= DORMANT;
+
+        final var spatial = spatials[index];
+        for (int i = 0, n = spatial.getNumControls(); i < n; ++i) {
+            final Control control = spatial.getControl(i);
+
+            if (control instanceof PhysicsControl) {
+                ((PhysicsControl) control).setEnabled(!dormant);
+            } else if (control instanceof AbstractControl) {
+                ((AbstractControl) control).setEnabled(!dormant);
+            }
+        }
+    }
+
+    /**
+     * Returns the game time the entity was last marked relevant, or was created.
+     */
+    public double getLastRelevant(final int id) {
+        return lastRelevant[id & INDEX_MASK];
+    }
+
+    public void markRelevant(final int id) {
+        lastRelevant[id & INDEX_MASK] = timers.getTime();
+    }
+
+    /**
+     * Returns the squared distance from the entity's position as of the last update
+     * to the point.
+     */
+    public float distanceSquared(final int id, final Vector3f point) {
+        final int i = (id & INDEX_MASK) * 3;
+
+        final float dx = position[i] - point.x;
+        final float dy = position[i + 1] - point.y;
+        final float dz = position[i + 2] - point.z;
+
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * Returns the number of live entities.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the id of the live entity at {@code index} in {@code [0, getCount())}.
+     * Destroying an entity moves the last one into its place, so a loop that destroys
+     * entities as it goes should walk backwards.
+     */
+    public int getId(final int index) {
+        return dense[index];
+    }
+
+    /**
+     * Returns the number of live entities with any of the bits in {@code bits}.
+     */
+    public int count(final int bits) {
+        int matching = 0;
+
+        for (int i = 0; i < count; ++i) {
+            if ((mask[dense[i] & INDEX_MASK] & bits) != 0) {
+                ++matching;
+            }
+        }
+
+        return matching;
+    }
+
+    /**
+     * Visits the live entities with any of the bits in {@code bits}. Entities must not
+     * be created or destroyed from inside the visitor.
+     */
+    public void forEach(final int bits, final IntConsumer visitor) {
+        for (int i = 0; i < count; ++i) {
+            final int id = dense[i];
+
+            if ((mask[id & INDEX_MASK] & bits) != 0) {
+                visitor.accept(id);
+            }
+        }
+    }
+
+    /**
+     * Visits the entities with any of the bits in {@code bits} whose body was within
+     * {@code radius} of {@code center} as of the last update. Queries don't nest, and
+     * entities must not be created or destroyed from inside the visitor.
+     */
+    public void query(final Vector3f center, final float radius, final int bits, final IntConsumer visitor) {
+        queryMask = bits;
+        queryVisitor = visitor;
+
+        try {
+            grid.query(center.x, center.y, center.z, radius, visitSlot);
+        } finally {
+            queryVisitor = null;
+        }
+    }
+
+    private void visitSlot(final Slot slot) {
+        if ((mask[slot.index] & queryMask) != 0) {
+            queryVisitor.accept(generation[slot.index] << INDEX_BITS | slot.index);
+        }
+    }
+
+    @Override
+    public void update(final float tpf) {
+        for (int i = 0; i < count; ++i) {
+            final int index = dense[i] & INDEX_MASK;
+            final var body = bodies[index];
+
+            if (!placed[index] || body.isActive()) {
+                body.getPhysicsLocation(location);
+                grid.put(slots[index], location.x, location.y, location.z);
+                placed[index] = true;
+
+                position[index * 3] = location.x;
+                position[index * 3 + 1] = location.y;
+                position[index * 3 + 2] = location.z;
+            }
+        }
+    }
+
+    private void grow() {
+        final int capacity = slots.length * 2;
+
+        slots = Arrays.copyOf(slots, capacity);
+        generation = Arrays.copyOf(generation, capacity);
+        mask = Arrays.copyOf(mask, capacity);
+        type = Arrays.copyOf(type, capacity);
+        spatials = Arrays.copyOf(spatials, capacity);
+        bodies = Arrays.copyOf(bodies, capacity);
+        placed = Arrays.copyOf(placed, capacity);
+        position = Arrays.copyOf(position, capacity * 3);
+        lastRelevant = Arrays.copyOf(lastRelevant, capacity);
+        denseSlot = Arrays.copyOf(denseSlot, capacity);
+        health = Arrays.copyOf(health, capacity);
+        healthControls = Arrays.copyOf(healthControls, capacity);
+        fuseDeadline = Arrays.copyOf(fuseDeadline, capacity);
+        aiState = Arrays.copyOf(aiState, capacity);
+        freeIndices = Arrays.copyOf(freeIndices, capacity);
+        dense = Arrays.copyOf(dense, capacity);
+    }
+
+    @Override
+    protected void initialize(final Application app) {}
+
+    @Override
+    protected void cleanup(final Application app) {
+        grid.clear();
+    }
+
+    @Override
+    protected void onEnable() {}
+
+    @Override
+    protected void onDisable() {}
+
+    /**
+     * An index's entry in the grid, which also keeps the health component in step
+     * with the entity's health control.
+     */
+    private final class Slot implements HealthDestructionControl.HealthListener {
+        private final int index;
+
+        private Slot(final int index) {
+            this.index = index;
+        }
+
+        @Override
+        public void onHealthChanged(final int newHealth) {
+            health[index] = newHealth;
+        }
+    }
+}
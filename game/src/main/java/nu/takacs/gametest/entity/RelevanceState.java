@@ -0,0 +1,186 @@
+package nu.takacs.gametest.entity;
+
+import com.jme3.app.Application;
+import com.jme3.app.state.BaseAppState;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import nu.takacs.gametest.time.GameTimerState;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Keeps the simulation to what is near the player, by distance to the camera:
+ * <ul>
+ *     <li>boxes and NPCs further away than the sleep radius go dormant, once they
+ *     have been out of range for a while and boxes have come to rest</li>
+ *     <li>dormant entities wake up when the player comes within the wake radius again,
+ *     or when a blast reaches them ({@link #wakeAround})</li>
+ *     <li>when there are more entities than the budget, the boxes that were near the
+ *     player or a blast the longest time ago are evicted, a few per frame</li>
+ * </ul>
+ * Grenades are left alone, their fuse is running.
+ */
+public class RelevanceState extends BaseAppState {
+
+    private static final int MAX_EVICTIONS_PER_FRAME = 16;
+
+    private final EntityRegistry entities;
+    private final GameTimerState timers;
+    private final float wakeDistanceSquared;
+    private final float sleepDistanceSquared;
+    private final float sleepDelay;
+    private final int entityBudget;
+    private final IntConsumer evictor;
+    // created once, so a blast doesn't allocate a visitor
+    private final IntConsumer wakeEntity = this::wake;
+
+    // the boxes picked for eviction this frame, oldest first
+    private final int[] evictionIds = new int[MAX_EVICTIONS_PER_FRAME];
+    private final double[] evictionTimes = new double[MAX_EVICTIONS_PER_FRAME];
+
+    private Camera camera;
+    private int dormantCount = 0;
+    private long evictedCount = 0;
+
+    /**
+     * @param wakeRadius   dormant entities closer than this wake up
+     * @param sleepRadius  entities further than this may go dormant; keep it larger than
+     *                     the wake radius, so entities at the edge don't flip every frame
+     * @param sleepDelay   seconds an entity has to be out of range before it goes dormant
+     * @param entityBudget the number of entities above which boxes are evicted
+     * @param evictor      takes a box out of the world, by its entity id
+     */
+    public RelevanceState(final EntityRegistry entities,
+                          final GameTimerState timers,
+                          final float wakeRadius,
+                          final float sleepRadius,
+                          final float sleepDelay,
+                          final int entityBudget,
+                          final IntConsumer evictor) {
+        this.entities = entities;
+        this.timers = timers;
+        this.wakeDistanceSquared = wakeRadius * wakeRadius;
+        this.sleepDistanceSquared = sleepRadius * sleepRadius;
+        this.sleepDelay = sleepDelay;
+        this.entityBudget = entityBudget;
+        this.evictor = evictor;
+    }
+
+    /**
+     * Wakes the dormant entities within {@code radius} of {@code center}, e.g. ahead of a
+     * blast there, and keeps them from going dormant again for the sleep delay.
+     */
+    public void wakeAround(final Vector3f center, final float radius) {
+        entities.query(center, radius, EntityRegistry.DORMANT, wakeEntity);
+    }
+
+    public int getDormantCount() {
+        return dormantCount;
+    }
+
+    public long getEvictedCount() {
+        return evictedCount;
+    }
+
+    @Override
+    public void update(final float tpf) {
+        final var cameraLocation = camera.getLocation();
+        final double now = timers.getTime();
+        int dormant = 0;
+
+        for (int i = 0, n = entities.getCount(); i < n; ++i) {
+            final int id = entities.getId(i);
+
+            if (entities.has(id, EntityRegistry.GRENADE)) {
+                continue;
+            }
+
+            final float distanceSquared = entities.distanceSquared(id, cameraLocation);
+            final boolean isDormant = entities.has(id, EntityRegistry.DORMANT);
+
+            if (distanceSquared < sleepDistanceSquared) {
+                entities.markRelevant(id);
+            }
+
+            if (isDormant) {
+                if (distanceSquared < wakeDistanceSquared) {
+                    entities.setDormant(id, false);
+                } else {
+                    ++dormant;
+                }
+            } else if (distanceSquared >= sleepDistanceSquared
+                    && now - entities.getLastRelevant(id) >= sleepDelay
+                    && (entities.has(id, EntityRegistry.NPC) || !entities.getBody(id).isActive())) {
+                entities.setDormant(id, true);
+                ++dormant;
+            }
+        }
+
+        dormantCount = dormant;
+
+        evict();
+    }
+
+    /**
+     * Evicts the boxes least recently relevant, picking all of this frame's in one pass
+     * over the entities.
+     */
+    private void evict() {
+        final int wanted = Math.min(MAX_EVICTIONS_PER_FRAME, entities.getCount() - entityBudget);
+
+        if (wanted <= 0) {
+            return;
+        }
+
+        int picked = 0;
+
+        for (int i = 0, n = entities.getCount(); i < n; ++i) {
+            final int id = entities.getId(i);
+
+            if (!entities.has(id, EntityRegistry.BOX)) {
+                continue;
+            }
+
+            final double time = entities.getLastRelevant(id);
+
+            if (picked == wanted && time >= evictionTimes[picked - 1]) {
+                continue;
+            }
+
+            // insertion into the short sorted list, dropping the newest if it is full
+            int j = picked < wanted ? picked++ : picked - 1;
+            for (; j > 0 && evictionTimes[j - 1] > time; --j) {
+                evictionIds[j] = evictionIds[j - 1];
+                evictionTimes[j] = evictionTimes[j - 1];
+            }
+
+            evictionIds[j] = id;
+            evictionTimes[j] = time;
+        }
+
+        // fewer when only grenades and NPCs are left
+        for (int i = 0; i < picked; ++i) {
+            evictor.accept(evictionIds[i]);
+            ++evictedCount;
+        }
+    }
+
+    private void wake(final int id) {
+        entities.setDormant(id, false);
+        entities.markRelevant(id);
+    }
+
+    @Override
+    protected void initialize(final Application app) {
+        camera = app.getCamera();
+    }
+
+    @Override
+    protected void cleanup(final Application app) {}
+
+    @Override
+    protected void onEnable() {}
+
+    @Override
+    protected void onDisable() {}
+}
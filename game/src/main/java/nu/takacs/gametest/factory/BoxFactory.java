@@ -0,0 +1,146 @@
+package nu.takacs.gametest.factory;
+
+import com.jme3.app.LegacyApplication;
+import com.jme3.bullet.collision.shapes.BoxCollisionShape;
+import com.jme3.bullet.control.RigidBodyControl;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.instancing.InstancedNode;
+import com.jme3.scene.shape.Box;
+import nu.takacs.gametest.control.HealthColorControl;
+import nu.takacs.gametest.control.HealthColorPalette;
+import nu.takacs.gametest.control.HealthDestructionControl;
+import nu.takacs.gametest.control.InstancingControl;
+import nu.takacs.gametest.entity.EntityRegistry;
+import nu.takacs.gametest.particle.FireParticleState;
+import nu.takacs.gametest.save.EntityType;
+
+import java.util.function.Consumer;
+
+/**
+ * Makes boxes that are drawn instanced: attach them to {@link #getInstancedNode()}, where all
+ * boxes of one health color are a single draw call, whatever their number. The
+ * instance transforms are read from the boxes every frame, and a change of health
+ * color moves a box to another color's batch. Every color keeps its batch while it has
+ * no boxes, so that the move never creates or drops one, which would rebuild the scene's
+ * update lists.
+ */
+public class BoxFactory {
+    public static final int MAX_HEALTH = 100;
+
+    private static final int HEALTH_COLOR_BUCKETS = 11;
+    private static final float BOX_MASS = 100.0f;
+    private static final float BOX_EXTENT = 1.0f;
+    private static final int MAX_FREE_BOXES = 512;
+    private static final String FIRE_USER_DATA = "fire_id";
+
+    private final HealthColorPalette healthColorPalette;
+    private final FireParticleState fires;
+    private final EntityRegistry entities;
+    private final BoxCollisionShape boxShape =
+            new BoxCollisionShape(new Vector3f(BOX_EXTENT, BOX_EXTENT, BOX_EXTENT));
+    private final PrefabPool pool;
+    private final InstancedNode instancedNode = new InstancedNode("Boxes");
+    private final InstancingControl instancingControl = new InstancingControl();
+
+    public BoxFactory(final LegacyApplication application,
+                      final FireParticleState fires,
+                      final EntityRegistry entities) {
+        this.healthColorPalette = new HealthColorPalette(application, HEALTH_COLOR_BUCKETS, true);
+        this.fires = fires;
+        this.entities = entities;
+
+        final var template = new Node("BoxNode");
+        final var mesh = new Box(BOX_EXTENT, BOX_EXTENT, BOX_EXTENT);
+        final var box = new Geometry("BoxGeometry", mesh);
+        box.setMaterial(healthColorPalette.getMaterial(MAX_HEALTH));
+
+        template.setUserData("object_type", "box");
+        template.attachChild(box);
+
+        this.pool = new PrefabPool(template, this::addControls, MAX_FREE_BOXES);
+
+        instancedNode.addControl(instancingControl);
+
+        // an instance too small to see holds each color's batch, as clones share the mesh
+        for (int i = 0; i < healthColorPalette.getBucketCount(); ++i) {
+            final var placeholder = new Geometry("BoxBatchPlaceholder", mesh);
+            placeholder.setMaterial(healthColorPalette.getBucketMaterial(i));
+            placeholder.setLocalScale(0.0f);
+            instancedNode.attachChild(placeholder);
+        }
+        instancingControl.markChanged();
+    }
+
+    /**
+     * Returns a full-health box with a burning fire and a {@link RigidBodyControl}
+     * that is not yet in any physics space. The box is registered as an entity with
+     * a health component.
+     */
+    public Spatial createBox(final Consumer<Spatial> onKilled) {
+        final var node = (Node) pool.acquire();
+        node.setUserData(FIRE_USER_DATA, fires.addFire(node));
+
+        final var healthDestructionControl = node.getControl(HealthDestructionControl.class);
+        healthDestructionControl.setOnBlowup(onKilled);
+        healthDestructionControl.setHealth(MAX_HEALTH);
+
+        final int id = entities.create(EntityType.BOX, node, node.getControl(RigidBodyControl.class));
+        entities.attachHealth(id, healthDestructionControl);
+
+        instancingControl.markChanged();
+
+        return node;
+    }
+
+    /**
+     * Takes back a destroyed box that has been removed from the physics space,
+     * and puts out its fire.
+     */
+    public void release(final Spatial box) {
+        entities.destroy(EntityRegistry.idOf(box));
+
+        final Integer fire = box.getUserData(FIRE_USER_DATA);
+
+        if (fire != null) {
+            fires.removeFire(fire);
+            box.setUserData(FIRE_USER_DATA, null);
+        }
+
+        final var body = box.getControl(RigidBodyControl.class);
+        body.setLinearVelocity(Vector3f.ZERO);
+        body.setAngularVelocity(Vector3f.ZERO);
+        body.clearForces();
+
+        pool.release(box);
+    }
+
+    /**
+     * Returns the node that boxes are drawn from. It is not attached to any scene.
+     */
+    public InstancedNode getInstancedNode() {
+        return instancedNode;
+    }
+
+    public PrefabPool getPool() {
+        return pool;
+    }
+
+    private void addControls(final Spatial spatial) {
+        final var node = (Node) spatial;
+        final var box = node.getChild("BoxGeometry");
+
+        final var healthColorControl = new HealthColorControl(healthColorPalette);
+
+        box.addControl(healthColorControl);
+
+        final var healthDestructionControl = new HealthDestructionControl(null);
+
+        node.addControl(healthDestructionControl);
+        healthDestructionControl.addHealthListener(healthColorControl);
+
+        node.addControl(new RigidBodyControl(boxShape, BOX_MASS));
+    }
+}
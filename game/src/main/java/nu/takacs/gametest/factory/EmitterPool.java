@@ -0,0 +1,117 @@
+package nu.takacs.gametest.factory;
+
+import com.jme3.effect.ParticleEmitter;
+import com.jme3.math.Transform;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool of particle emitters. Released emitters are detached, emptied and
+ * handed out again instead of building a new emitter and its mesh buffers.
+ */
+public class EmitterPool {
+    private static final Logger LOG = LoggerFactory.getLogger(EmitterPool.class);
+
+    public enum OverflowPolicy {
+        /** {@link #acquire()} returns {@code null} when every emitter is in use. */
+        DROP,
+        /**
+         * The emitter that has been in use the longest is reset and handed out again.
+         * Resetting strips the controls the previous owner added, including any timed release.
+         */
+        STEAL_OLDEST,
+        /** A new emitter is created; extras beyond the max size are discarded on release. */
+        GROW
+    }
+
+    private final String name;
+    private final Supplier<ParticleEmitter> creator;
+    private final int maxSize;
+    private final OverflowPolicy overflowPolicy;
+
+    private final ArrayDeque<ParticleEmitter> free = new ArrayDeque<>();
+    // insertion order doubles as acquisition order, so the first element is the oldest
+    private final LinkedHashSet<ParticleEmitter> inUse = new LinkedHashSet<>();
+
+    public EmitterPool(final String name,
+                       final Supplier<ParticleEmitter> creator,
+                       final int maxSize,
+                       final OverflowPolicy overflowPolicy) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1, got " + maxSize);
+        }
+
+        this.name = name;
+        this.creator = creator;
+        this.maxSize = maxSize;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Returns an emitter with no particles, no parent, none of the previous owner's
+     * controls and an identity transform, or {@code null} if the pool is exhausted
+     * and the policy is DROP.
+     */
+    public ParticleEmitter acquire() {
+        ParticleEmitter emitter = free.poll();
+
+        if (emitter == null) {
+            if (inUse.size() < maxSize || overflowPolicy == OverflowPolicy.GROW) {
+                emitter = creator.get();
+            } else if (overflowPolicy == OverflowPolicy.STEAL_OLDEST) {
+                final Iterator<ParticleEmitter> oldest = inUse.iterator();
+                emitter = oldest.next();
+                oldest.remove();
+                reset(emitter);
+            } else {
+                LOG.debug("Emitter pool {} exhausted, dropping request", name);
+                return null;
+            }
+        }
+
+        inUse.add(emitter);
+        return emitter;
+    }
+
+    public void release(final ParticleEmitter emitter) {
+        if (!inUse.remove(emitter)) {
+            // already released, or stolen and handed out to someone else
+            return;
+        }
+
+        reset(emitter);
+
+        if (free.size() + inUse.size() < maxSize) {
+            free.push(emitter);
+        }
+    }
+
+    public int getInUseCount() {
+        return inUse.size();
+    }
+
+    public int getFreeCount() {
+        return free.size();
+    }
+
+    private static void reset(final ParticleEmitter emitter) {
+        emitter.removeFromParent();
+
+        for (int i = emitter.getNumControls() - 1; i >= 0; --i) {
+            final var control = emitter.getControl(i);
+
+            // the emitter drives its own particles through this one, keep it
+            if (!(control instanceof ParticleEmitter.ParticleEmitterControl)) {
+                emitter.removeControl(control);
+            }
+        }
+
+        emitter.killAllParticles();
+        emitter.setLocalTransform(Transform.IDENTITY);
+    }
+}
@@ -8,18 +8,51 @@ import com.jme3.math.ColorRGBA;
 import com.jme3.math.Vector3f;
 import com.jme3.scene.Spatial;
 import nu.takacs.gametest.control.TimedDestructionControl;
+import nu.takacs.gametest.time.GameTimerState;
 
 public class ExplosionFactory {
+    private static final int POOL_SIZE = 64;
+
     private final Material explosionMaterial;
+    private final EmitterPool pool;
+    private final GameTimerState timers;
+
+    public ExplosionFactory(final LegacyApplication application,
+                            final GameTimerState timers) {
+        this.timers = timers;
 
-    public ExplosionFactory(final LegacyApplication application) {
         explosionMaterial = new Material(application.getAssetManager(),
                 "Common/MatDefs/Misc/Particle.j3md");
         explosionMaterial.setTexture("Texture", application.getAssetManager()
                 .loadTexture("Effects/Explosion/flame.png"));
+
+        pool = new EmitterPool("explosions", this::buildEmitter,
+                POOL_SIZE, EmitterPool.OverflowPolicy.STEAL_OLDEST);
     }
 
+    /**
+     * Returns a pooled explosion at the given location that returns itself to the
+     * pool when it has burnt out, or {@code null} if the pool had nothing to give.
+     */
     public Spatial createExplosion(final Vector3f location) {
+        final ParticleEmitter fire = pool.acquire();
+
+        if (fire == null) {
+            return null;
+        }
+
+        fire.setLocalTranslation(location);
+        fire.addControl(new TimedDestructionControl(timers,
+                spatial -> pool.release((ParticleEmitter) spatial), 500L));
+
+        return fire;
+    }
+
+    public EmitterPool getPool() {
+        return pool;
+    }
+
+    private ParticleEmitter buildEmitter() {
         final ParticleEmitter fire =
                 new ParticleEmitter("Emitter", ParticleMesh.Type.Triangle, 30);
 
@@ -36,8 +69,6 @@ public class ExplosionFactory {
         fire.setHighLife(3f);
         fire.getParticleInfluencer().setInitialVelocity(new Vector3f(0.0f, 5.0f, 0.0f));
         //fire.getParticleInfluencer().setVelocityVariation(1.0f);
-        fire.setLocalTranslation(location);
-        fire.addControl(new TimedDestructionControl(spatial -> {}, 500L));
 
         return fire;
     }
@@ -0,0 +1,73 @@
+package nu.takacs.gametest.factory;
+
+import com.jme3.app.LegacyApplication;
+import com.jme3.bullet.collision.shapes.CollisionShape;
+import com.jme3.bullet.control.RigidBodyControl;
+import com.jme3.bullet.util.CollisionShapeFactory;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Spatial;
+import nu.takacs.gametest.control.TimedDestructionControl;
+import nu.takacs.gametest.entity.EntityRegistry;
+import nu.takacs.gametest.save.EntityType;
+
+public class GrenadeFactory {
+    private static final float GRENADE_MASS = 5.0f;
+    private static final int MAX_FREE_GRENADES = 64;
+
+//    private final Material grenadeMaterial;
+    private final CollisionShape grenadeShape;
+    private final PrefabPool pool;
+    private final EntityRegistry entities;
+
+    public GrenadeFactory(final LegacyApplication application, final EntityRegistry entities) {
+        this.entities = entities;
+
+//        this.grenadeMaterial = new Material(application.getAssetManager(),
+//                "Common/MatDefs/Misc/Unshaded.j3md");
+//        this.grenadeMaterial.setColor("Color", ColorRGBA.DarkGray);
+
+        final var template = application.getAssetManager()
+//                .loadModel("Models/grenade.j3o");
+            .loadModel("Models/Avocado.glb");
+        //grenade.setMaterial(grenadeMaterial);
+        template.scale(30.0f);
+        template.setUserData("object_type", "grenade");
+
+        grenadeShape = CollisionShapeFactory.createDynamicMeshShape(template);
+
+        pool = new PrefabPool(template,
+                grenade -> grenade.addControl(new RigidBodyControl(grenadeShape, GRENADE_MASS)),
+                MAX_FREE_GRENADES);
+    }
+
+    /**
+     * Returns a grenade with a {@link RigidBodyControl} that is not yet in any physics space,
+     * registered as an entity.
+     */
+    public Spatial createGrenade() {
+        final var grenade = pool.acquire();
+        entities.create(EntityType.GRENADE, grenade, grenade.getControl(RigidBodyControl.class));
+
+        return grenade;
+    }
+
+    /**
+     * Takes back a grenade that has been removed from the physics space.
+     */
+    public void recycle(final Spatial grenade) {
+        entities.destroy(EntityRegistry.idOf(grenade));
+
+        final var body = grenade.getControl(RigidBodyControl.class);
+        body.setLinearVelocity(Vector3f.ZERO);
+        body.setAngularVelocity(Vector3f.ZERO);
+        body.clearForces();
+
+        grenade.removeControl(TimedDestructionControl.class);
+
+        pool.release(grenade);
+    }
+
+    public PrefabPool getPool() {
+        return pool;
+    }
+}
@@ -0,0 +1,199 @@
+package nu.takacs.gametest.factory;
+
+import com.jme3.asset.AssetKey;
+import com.jme3.asset.AssetManager;
+import com.jme3.asset.AssetNotFoundException;
+import com.jme3.terrain.heightmap.ImageBasedHeightMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Keeps decoded heightmaps on disk so they don't have to be decoded from their image
+ * on every start.
+ * <p>
+ * Cache files are named after a hash of the source image's bytes, so editing the image
+ * simply misses the cache. A file holds a small header and the heights as raw little
+ * endian floats, and is memory-mapped when read. Anything wrong with the cache falls
+ * back to decoding the image, which rewrites it.
+ */
+public class HeightmapCache {
+    private static final Logger LOG = LoggerFactory.getLogger(HeightmapCache.class);
+
+    private static final int MAGIC = 0x4754484D;
+    // bump when the decoding or the layout changes, so old files are ignored
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 3 * Integer.BYTES;
+
+    private final Path directory;
+
+    public HeightmapCache(final Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the heights of the heightmap image at {@code imagePath}, row by row.
+     */
+    public float[] load(final AssetManager assetManager, final String imagePath) {
+        final long start = System.nanoTime();
+        final String key;
+
+        try {
+            key = hash(assetManager, imagePath);
+        } catch (final IOException e) {
+            LOG.warn("Could not hash {}, decoding it", imagePath, e);
+            return decode(assetManager, imagePath);
+        }
+
+        final var file = directory.resolve(fileName(imagePath) + "-" + key + ".heights");
+
+        if (Files.exists(file)) {
+            try {
+                final float[] heights = read(file);
+                LOG.info("Heightmap {} read from cache in {} ms", imagePath,
+                        (System.nanoTime() - start) / 1_000_000L);
+                return heights;
+            } catch (final IOException e) {
+                LOG.warn("Heightmap cache {} is unusable, decoding {}", file, imagePath, e);
+            }
+        }
+
+        final float[] heights = decode(assetManager, imagePath);
+        LOG.info("Heightmap {} decoded in {} ms", imagePath, (System.nanoTime() - start) / 1_000_000L);
+
+        try {
+            write(file, heights);
+            deleteStale(imagePath, file);
+        } catch (final IOException e) {
+            LOG.warn("Could not write heightmap cache {}", file, e);
+        }
+
+        return heights;
+    }
+
+    private static float[] decode(final AssetManager assetManager, final String imagePath) {
+        final var image = assetManager.loadTexture(imagePath).getImage();
+        final var heightMap = new ImageBasedHeightMap(image);
+        heightMap.load();
+
+        return heightMap.getHeightMap();
+    }
+
+    private static float[] read(final Path file) throws IOException {
+        try (final var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+
+            if (size < HEADER_BYTES) {
+                throw new IOException("Truncated heightmap cache");
+            }
+
+            final var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Not a heightmap cache of this version");
+            }
+
+            final int count = buffer.getInt();
+            if (count < 0 || size != HEADER_BYTES + (long) count * Float.BYTES) {
+                throw new IOException("Truncated heightmap cache");
+            }
+
+            final float[] heights = new float[count];
+            buffer.asFloatBuffer().get(heights);
+
+            return heights;
+        }
+    }
+
+    private void write(final Path file, final float[] heights) throws IOException {
+        Files.createDirectories(directory);
+
+        final var buffer = ByteBuffer.allocate(HEADER_BYTES + heights.length * Float.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(heights.length);
+        buffer.asFloatBuffer().put(heights);
+        buffer.rewind();
+
+        final var temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+
+        try {
+            try (final var channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void deleteStale(final String imagePath, final Path current) throws IOException {
+        try (final var stale = Files.newDirectoryStream(directory, fileName(imagePath) + "-*.heights")) {
+            for (final var file : stale) {
+                if (!file.equals(current)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private static String hash(final AssetManager assetManager, final String imagePath) throws IOException {
+        final var info = assetManager.locateAsset(new AssetKey<>(imagePath));
+
+        if (info == null) {
+            throw new AssetNotFoundException(imagePath);
+        }
+
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+
+        try (InputStream in = info.openStream()) {
+            final byte[] chunk = new byte[64 * 1024];
+            int read;
+
+            while ((read = in.read(chunk)) > 0) {
+                digest.update(chunk, 0, read);
+            }
+        }
+
+        final var hex = new StringBuilder();
+        for (final byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+
+        return hex.substring(0, 16);
+    }
+
+    private static String fileName(final String imagePath) {
+        final String name = imagePath.substring(imagePath.lastIndexOf('/') + 1);
+        final int dot = name.lastIndexOf('.');
+
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+}
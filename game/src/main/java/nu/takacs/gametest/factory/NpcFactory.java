@@ -0,0 +1,93 @@
+package nu.takacs.gametest.factory;
+
+import com.jme3.anim.AnimClip;
+import com.jme3.anim.AnimComposer;
+import com.jme3.anim.SkinningControl;
+import com.jme3.anim.tween.action.Action;
+import com.jme3.anim.tween.action.LinearBlendSpace;
+import com.jme3.app.LegacyApplication;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import nu.takacs.gametest.control.NpcCharacterControl;
+import nu.takacs.gametest.entity.EntityRegistry;
+import nu.takacs.gametest.save.EntityType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class NpcFactory {
+    private static final Logger LOG = LoggerFactory.getLogger(NpcFactory.class);
+
+    public static final String MODEL_NAME = "npcModel";
+
+    private final Spatial template;
+    private final EntityRegistry entities;
+
+    public NpcFactory(final LegacyApplication application, final EntityRegistry entities) {
+        this.entities = entities;
+
+//        final var sphere = new Sphere(50, 50, 1.0f);
+//        final var npcSpatial = new Geometry("npcSphere", sphere);
+//
+//        final var npcMaterial = new Material(getAssetManager(),
+//                "Common/MatDefs/Light/Lighting.j3md");
+//
+//        npcMaterial.setBoolean("UseMaterialColors",true);
+//        npcMaterial.setColor("Ambient", ColorRGBA.Green);
+//        npcMaterial.setColor("Diffuse", ColorRGBA.Green);
+//
+//        npcSpatial.setMaterial(npcMaterial);
+//
+        template = application.getAssetManager().loadModel("Models/Oto/Oto.mesh.xml");
+
+        template.setName(MODEL_NAME);
+        template.setLocalScale(0.25f);
+        template.setLocalTranslation(0.0f, 1.1f, 0.0f);
+
+        // let the GPU do the skinning where it can, so the CPU only updates the armature
+        final var skinningControl = template.getControl(SkinningControl.class);
+        if (skinningControl != null) {
+            skinningControl.setHardwareSkinningPreferred(true);
+        }
+
+        for (AnimClip animClip : template.getControl(AnimComposer.class).getAnimClips()) {
+            LOG.debug("animClip: {}", animClip.getName());
+        }
+    }
+
+    /**
+     * Returns a new NPC cloned from the cached model, with a character control that
+     * is not yet in any physics space. The NPC is registered as an entity.
+     */
+    public Node createNpc() {
+        final var npcModel = template.clone(false);
+
+        final var npcSpatial = new Node("npcNode");
+        npcSpatial.setUserData("object_type", "npc");
+        npcSpatial.attachChild(npcModel);
+
+        final var animComposer = npcModel.getControl(AnimComposer.class);
+        animComposer.actionBlended("Attack", new LinearBlendSpace(0f, 0.5f), "Dodge");
+        for (AnimClip animClip : animComposer.getAnimClips()) {
+            Action action = animComposer.action(animClip.getName());
+//            if(!"stand".equals(animClip.getName())) {
+//                action = new BaseAction(Tweens.sequence(action, Tweens.callMethod(this, "backToStand", animComposer)));
+//            }
+            animComposer.addAction(animClip.getName(), action);
+        }
+
+        final var npcControl = new NpcCharacterControl(1.0f, 2f, 50f);
+        npcSpatial.addControl(npcControl);
+        npcControl.setPhysicsDamping(0.0f);
+
+        entities.create(EntityType.NPC, npcSpatial, npcControl.getRigidBody());
+
+        return npcSpatial;
+    }
+
+    /**
+     * Unregisters an NPC that has been taken out of the world.
+     */
+    public void release(final Spatial npc) {
+        entities.destroy(EntityRegistry.idOf(npc));
+    }
+}
@@ -0,0 +1,69 @@
+package nu.takacs.gametest.factory;
+
+import com.jme3.scene.Spatial;
+
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
+
+/**
+ * Hands out clones of a template spatial. Clones share the template's meshes and
+ * materials, and released clones go on a free list with their controls still
+ * attached, so reuse only has to reset state instead of rebuilding the graph.
+ */
+public class PrefabPool {
+    private final Spatial template;
+    private final Consumer<Spatial> onCreate;
+    private final int maxFree;
+
+    private final ArrayDeque<Spatial> free = new ArrayDeque<>();
+    private int createdCount = 0;
+
+    /**
+     * @param onCreate called once for every new clone, to add the controls it keeps for life
+     * @param maxFree  how many released clones to keep around; extras are left to the GC
+     */
+    public PrefabPool(final Spatial template,
+                      final Consumer<Spatial> onCreate,
+                      final int maxFree) {
+        this.template = template;
+        this.onCreate = onCreate;
+        this.maxFree = maxFree;
+    }
+
+    public Spatial acquire() {
+        var spatial = free.poll();
+
+        if (spatial == null) {
+            spatial = template.clone(false);
+            onCreate.accept(spatial);
+            ++createdCount;
+        }
+
+        spatial.setLocalTransform(template.getLocalTransform());
+        return spatial;
+    }
+
+    /**
+     * Detaches the spatial and keeps it for reuse. The caller is expected to have
+     * taken it out of the physics space and reset any per-use state first.
+     */
+    public void release(final Spatial spatial) {
+        spatial.removeFromParent();
+
+        if (free.size() < maxFree) {
+            free.push(spatial);
+        }
+    }
+
+    public Spatial getTemplate() {
+        return template;
+    }
+
+    public int getFreeCount() {
+        return free.size();
+    }
+
+    public int getCreatedCount() {
+        return createdCount;
+    }
+}
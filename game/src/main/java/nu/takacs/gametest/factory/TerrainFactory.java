@@ -0,0 +1,140 @@
+package nu.takacs.gametest.factory;
+
+import com.jme3.app.LegacyApplication;
+import com.jme3.material.Material;
+import com.jme3.math.Vector3f;
+import com.jme3.terrain.geomipmap.TerrainGrid;
+import com.jme3.terrain.geomipmap.TerrainQuad;
+import com.jme3.terrain.geomipmap.grid.FractalTileLoader;
+import com.jme3.terrain.noise.ShaderUtils;
+import com.jme3.terrain.noise.basis.FilteredBasis;
+import com.jme3.terrain.noise.filter.IterativeFilter;
+import com.jme3.terrain.noise.filter.OptimizedErode;
+import com.jme3.terrain.noise.filter.PerturbFilter;
+import com.jme3.terrain.noise.filter.SmoothFilter;
+import com.jme3.terrain.noise.fractal.FractalSum;
+import com.jme3.texture.Texture;
+import nu.takacs.gametest.nav.NavGrid;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+public class TerrainFactory {
+    private static final int PATCH_SIZE = 65;
+    private static final int TERRAIN_SIZE = 513;
+    private static final Vector3f TERRAIN_TRANSLATION = new Vector3f(0, -100, 0);
+    private static final Vector3f TERRAIN_SCALE = new Vector3f(2f, 1f, 2f);
+    // 4 samples a side makes 8 unit cells, 128 by 128 of them
+    private static final int NAV_SAMPLES_PER_CELL = 4;
+    private static final float NAV_MAX_SLOPE = 0.75f;
+    private static final int PAGED_TILE_SIZE = 257;
+    private static final float PAGED_HEIGHT_SCALE = 256f;
+    private static final Path HEIGHTMAP_CACHE_DIRECTORY = Paths.get("cache");
+
+    private final Material terrainMaterial;
+    private final float[] heightMap;
+
+    public TerrainFactory(final LegacyApplication application) {
+        var assetManager = application.getAssetManager();
+        /** 1. Create terrain material and load four textures into it. */
+        terrainMaterial = new Material(assetManager,
+                "Common/MatDefs/Terrain/TerrainLighting.j3md");
+
+        /** 1.1) Add ALPHA map (for red-blue-green coded splat textures) */
+        terrainMaterial.setTexture("AlphaMap", assetManager.loadTexture(
+                "Textures/Terrain/splat/alphamap.png"));
+
+        /** 1.2) Add GRASS texture into the red layer (Tex1). */
+        final Texture grassTexture = assetManager.loadTexture(
+                "Textures/Terrain/splat/grass.jpg");
+        grassTexture.setWrap(Texture.WrapMode.Repeat);
+        terrainMaterial.setTexture("DiffuseMap", grassTexture);
+        terrainMaterial.setFloat("DiffuseMap_0_scale", 64f);
+
+        /** 1.3) Add DIRT texture into the green layer (Tex2) */
+        final Texture dirtTexture = assetManager.loadTexture(
+                "Textures/Terrain/splat/dirt.jpg");
+        dirtTexture.setWrap(Texture.WrapMode.Repeat);
+        terrainMaterial.setTexture("DiffuseMap_1", dirtTexture);
+        terrainMaterial.setFloat("DiffuseMap_1_scale", 32f);
+
+        /** 1.4) Add ROAD texture into the blue layer (Tex3) */
+        Texture rock = assetManager.loadTexture(
+                "Textures/Terrain/splat/road.jpg");
+        rock.setWrap(Texture.WrapMode.Repeat);
+        terrainMaterial.setTexture("DiffuseMap_2", rock);
+        terrainMaterial.setFloat("DiffuseMap_2_scale", 128f);
+
+        /** 2. Create the height map, decoding the image only if the cache is out of date */
+        heightMap = new HeightmapCache(HEIGHTMAP_CACHE_DIRECTORY).load(assetManager,
+                "Textures/Terrain/splat/mountains512.png");
+    }
+
+
+    public TerrainQuad createTerrain() {
+
+        var terrain = new TerrainQuad("my terrain", PATCH_SIZE, TERRAIN_SIZE, heightMap);
+
+        /** 4. We give the terrain its material, position & scale it, and attach it. */
+        terrain.setMaterial(terrainMaterial);
+        terrain.setLocalTranslation(TERRAIN_TRANSLATION);
+        terrain.setLocalScale(TERRAIN_SCALE);
+
+        return terrain;
+    }
+
+    /**
+     * Returns where NPCs can walk on a terrain from {@link #createTerrain()}. Reads the
+     * heights back from the terrain, as the heightmap image is a sample short of the
+     * terrain's size along each side.
+     */
+    public NavGrid createNavGrid(final TerrainQuad terrain) {
+        return NavGrid.fromHeightMap(terrain.getHeightMap(), terrain.getTotalSize(),
+                NAV_SAMPLES_PER_CELL, TERRAIN_SCALE, TERRAIN_TRANSLATION, NAV_MAX_SLOPE);
+    }
+
+    /**
+     * Returns an endless terrain whose tiles are generated from fractal noise in the
+     * background as the camera moves. Listen to the grid for tiles coming and going.
+     */
+    public TerrainGrid createPagedTerrain() {
+        final var base = new FractalSum();
+        base.setRoughness(0.7f);
+        base.setFrequency(1.0f);
+        base.setAmplitude(1.0f);
+        base.setLacunarity(2.12f);
+        base.setOctaves(8);
+        base.setScale(0.02125f);
+        base.addModulator(in -> ShaderUtils.clamp(in[0] * 0.5f + 0.5f, 0, 1));
+
+        final var ground = new FilteredBasis(base);
+
+        final var perturb = new PerturbFilter();
+        perturb.setMagnitude(0.119f);
+
+        final var erode = new OptimizedErode();
+        erode.setRadius(5);
+        erode.setTalus(0.011f);
+
+        final var smooth = new SmoothFilter();
+        smooth.setRadius(1);
+        smooth.setEffect(0.7f);
+
+        final var iterate = new IterativeFilter();
+        iterate.addPreFilter(perturb);
+        iterate.addPostFilter(smooth);
+        iterate.setFilter(erode);
+        iterate.setIterations(1);
+
+        ground.addPreFilter(iterate);
+
+        final var terrain = new TerrainGrid("paged terrain", PATCH_SIZE, PAGED_TILE_SIZE,
+                new FractalTileLoader(ground, PAGED_HEIGHT_SCALE));
+
+        terrain.setMaterial(terrainMaterial);
+        terrain.setLocalTranslation(TERRAIN_TRANSLATION);
+        terrain.setLocalScale(TERRAIN_SCALE);
+
+        return terrain;
+    }
+}
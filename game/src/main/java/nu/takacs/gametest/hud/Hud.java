@@ -0,0 +1,264 @@
+package nu.takacs.gametest.hud;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import com.jme3.app.Application;
+import com.jme3.app.SimpleApplication;
+import com.jme3.app.state.BaseAppState;
+import com.jme3.font.BitmapFont;
+import com.jme3.font.BitmapText;
+import com.jme3.material.Material;
+import com.jme3.material.RenderState;
+import com.jme3.math.ColorRGBA;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.shape.Quad;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The crosshairs and a console of the last {@link #SCROLLBACK} lines, of which
+ * {@link #NUM_LINES} are shown.
+ * <p>
+ * Appending only stores the line; the console is redrawn once per frame when attached.
+ * The text lines move up as new ones arrive, so a redraw only sets the text of the lines
+ * that weren't visible before. Log output can be shown in the console too, see
+ * {@link #captureLog}.
+ */
+public class Hud extends BaseAppState {
+    private static final int NUM_LINES = 10;
+    private static final int SCROLLBACK = 1024;
+    private static final float LINE_MARGIN = 10.0f;
+    private static final int MAX_LOG_LINES_PER_FRAME = 8;
+
+    private final SimpleApplication application;
+    private final BitmapText[] bitmapTextLines = new BitmapText[NUM_LINES];
+    // the line number each text line shows, or -1
+    private final long[] shownLines = new long[NUM_LINES];
+    private final boolean[] rowTaken = new boolean[NUM_LINES];
+    private final String[] consoleLines = new String[SCROLLBACK];
+
+    private long lineCount = 0;
+    private int scrollOffset = 0;
+    private boolean dirty = false;
+    private final Node consoleNode = new Node("hud-node");
+    private final float lineHeight;
+
+    private HudLogAppender logAppender;
+
+    final float displayWidth;
+    final float displayHeight;
+
+    public Hud(
+            final SimpleApplication application,
+            final BitmapFont font,
+            final float displayWidth,
+            final float displayHeight) {
+
+        this.application = application;
+        this.displayWidth = displayWidth;
+        this.displayHeight = displayHeight;
+
+        for (int i = 0; i < NUM_LINES; ++i) {
+            final var line = new BitmapText(font, false);
+            line.setSize(font.getCharSet().getRenderedSize());
+            line.setColor(ColorRGBA.White);
+            line.setText("");
+
+            bitmapTextLines[i] = line;
+            shownLines[i] = -1;
+            consoleNode.attachChild(line);
+        }
+
+        lineHeight = bitmapTextLines[0].getLineHeight() + LINE_MARGIN;
+
+        for (int i = 0; i < NUM_LINES; ++i) {
+            placeLine(bitmapTextLines[i], i);
+        }
+
+        final float textHeight = lineHeight * NUM_LINES;
+
+        final var material = new Material(application.getAssetManager(),
+                "Common/MatDefs/Misc/Unshaded.j3md");
+        material.setColor("Color", new ColorRGBA(0, 0, 0, 0.3f));
+        material.getAdditionalRenderState().setBlendMode(RenderState.BlendMode.Alpha);
+        material.setTransparent(true);
+
+        final var background = new Geometry("background-quad", new Quad(400, textHeight));
+        background.setMaterial(material);
+
+        consoleNode.attachChild(background);
+
+        application.getGuiNode().attachChild(consoleNode);
+
+        //final var guiFont = application.getAssetManager().loadFont("Interface/Fonts/Default.fnt");
+        BitmapText crosshairs = new BitmapText(font, false);
+        crosshairs.setSize(font.getCharSet().getRenderedSize() * 2f);
+        crosshairs.setText("+");
+        crosshairs.setLocalTranslation( // center
+                displayWidth / 2f - font.getCharSet().getRenderedSize() / 3f * 2f,
+                displayHeight / 2f + crosshairs.getLineHeight() / 2f, 0f);
+        application.getGuiNode().attachChild(crosshairs);
+
+    }
+
+    /**
+     * Adds a line to the console. Only call it on the render thread.
+     */
+    public void consoleAppend(final String text) {
+        consoleLines[(int) (lineCount % SCROLLBACK)] = text;
+        ++lineCount;
+
+        if (scrollOffset > 0) {
+            // keep showing the same lines while scrolled back
+            scrollOffset = Math.min(scrollOffset + 1, maxScrollOffset());
+        }
+
+        dirty = true;
+    }
+
+    /**
+     * Scrolls back towards older lines by a page.
+     */
+    public void scrollUp() {
+        scrollTo(scrollOffset + NUM_LINES - 1);
+    }
+
+    /**
+     * Scrolls towards the newest lines by a page.
+     */
+    public void scrollDown() {
+        scrollTo(scrollOffset - (NUM_LINES - 1));
+    }
+
+    private void scrollTo(final int offset) {
+        final int clamped = Math.max(0, Math.min(offset, maxScrollOffset()));
+
+        if (clamped != scrollOffset) {
+            scrollOffset = clamped;
+            dirty = true;
+        }
+    }
+
+    private int maxScrollOffset() {
+        return (int) Math.max(0, Math.min(lineCount, SCROLLBACK) - NUM_LINES);
+    }
+
+    /**
+     * Shows log events of {@code threshold} and above in the console, at most a few
+     * lines per frame. Only works while the HUD is attached.
+     */
+    public void captureLog(final Level threshold) {
+        if (logAppender != null) {
+            return;
+        }
+
+        final var context = (LoggerContext) LoggerFactory.getILoggerFactory();
+
+        logAppender = new HudLogAppender(threshold);
+        logAppender.setContext(context);
+        logAppender.start();
+        context.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME).addAppender(logAppender);
+    }
+
+    private void releaseLog() {
+        if (logAppender == null) {
+            return;
+        }
+
+        final var context = (LoggerContext) LoggerFactory.getILoggerFactory();
+
+        context.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME).detachAppender(logAppender);
+        logAppender.stop();
+        logAppender = null;
+    }
+
+    public void toggleVisibility() {
+        if (application.getGuiNode().hasChild(consoleNode)) {
+            application.getGuiNode().detachChild(consoleNode);
+        } else {
+            application.getGuiNode().attachChild(consoleNode);
+        }
+    }
+
+    public void showConsole() {
+        if (!application.getGuiNode().hasChild(consoleNode)) {
+            application.getGuiNode().attachChild(consoleNode);
+        }
+    }
+
+    public void hideConsole() {
+        if (application.getGuiNode().hasChild(consoleNode)) {
+            application.getGuiNode().detachChild(consoleNode);
+        }
+    }
+
+    @Override
+    public void update(final float tpf) {
+        if (logAppender != null) {
+            logAppender.drain(this, MAX_LOG_LINES_PER_FRAME);
+        }
+
+        if (dirty) {
+            dirty = false;
+            redraw();
+        }
+    }
+
+    private void redraw() {
+        final long first = lineCount - scrollOffset - NUM_LINES;
+
+        // text lines still showing a visible line just move to its row
+        for (int row = 0; row < NUM_LINES; ++row) {
+            rowTaken[row] = false;
+        }
+
+        for (int i = 0; i < NUM_LINES; ++i) {
+            final long row = shownLines[i] - first;
+
+            if (shownLines[i] >= 0 && row >= 0 && row < NUM_LINES && !rowTaken[(int) row]) {
+                rowTaken[(int) row] = true;
+                placeLine(bitmapTextLines[i], (int) row);
+            } else {
+                shownLines[i] = -1;
+            }
+        }
+
+        // the others get the text of the rows left over
+        int row = 0;
+        for (int i = 0; i < NUM_LINES; ++i) {
+            if (shownLines[i] >= 0) {
+                continue;
+            }
+
+            while (rowTaken[row]) {
+                ++row;
+            }
+
+            final long line = first + row;
+            final boolean stored = line >= 0 && line >= lineCount - SCROLLBACK;
+
+            bitmapTextLines[i].setText(stored ? consoleLines[(int) (line % SCROLLBACK)] : "");
+            shownLines[i] = stored ? line : -1;
+            rowTaken[row] = true;
+            placeLine(bitmapTextLines[i], row);
+        }
+    }
+
+    private void placeLine(final BitmapText line, final int row) {
+        line.setLocalTranslation(0, (NUM_LINES - row) * lineHeight, 0);
+    }
+
+    @Override
+    protected void initialize(final Application app) {}
+
+    @Override
+    protected void cleanup(final Application app) {
+        releaseLog();
+    }
+
+    @Override
+    protected void onEnable() {}
+
+    @Override
+    protected void onDisable() {}
+}
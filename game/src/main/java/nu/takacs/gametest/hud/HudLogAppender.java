@@ -0,0 +1,63 @@
+package nu.takacs.gametest.hud;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.AppenderBase;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collects log events from any thread for the {@link Hud} console, which takes a few of
+ * them every frame. Events that don't fit in the queue are counted and reported as one
+ * line instead, so a burst of logging can't flood the console or slow down the frame.
+ */
+public class HudLogAppender extends AppenderBase<ILoggingEvent> {
+    private static final int CAPACITY = 256;
+
+    private final Level threshold;
+    private final BlockingQueue<String> lines = new ArrayBlockingQueue<>(CAPACITY);
+    private final AtomicInteger dropped = new AtomicInteger();
+
+    public HudLogAppender(final Level threshold) {
+        this.threshold = threshold;
+        setName("hud");
+    }
+
+    @Override
+    protected void append(final ILoggingEvent event) {
+        if (!event.getLevel().isGreaterOrEqual(threshold)) {
+            return;
+        }
+
+        final String logger = event.getLoggerName();
+        final String line = event.getLevel() + " "
+                + logger.substring(logger.lastIndexOf('.') + 1) + ": "
+                + event.getFormattedMessage();
+
+        if (!lines.offer(line)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Moves up to {@code maxLines} queued lines into the console. Call it once per frame
+     * on the render thread.
+     */
+    void drain(final Hud hud, final int maxLines) {
+        for (int i = 0; i < maxLines; ++i) {
+            final String line = lines.poll();
+
+            if (line == null) {
+                break;
+            }
+
+            hud.consoleAppend(line);
+        }
+
+        if (dropped.get() > 0 && lines.isEmpty()) {
+            hud.consoleAppend("(" + dropped.getAndSet(0) + " log lines dropped)");
+        }
+    }
+}
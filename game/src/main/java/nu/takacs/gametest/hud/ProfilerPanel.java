@@ -0,0 +1,169 @@
+package nu.takacs.gametest.hud;
+
+import com.jme3.app.Application;
+import com.jme3.app.SimpleApplication;
+import com.jme3.app.state.BaseAppState;
+import com.jme3.font.BitmapFont;
+import com.jme3.font.BitmapText;
+import com.jme3.material.Material;
+import com.jme3.material.RenderState;
+import com.jme3.math.ColorRGBA;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.shape.Quad;
+import nu.takacs.gametest.profiler.FrameProfiler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntSupplier;
+
+/**
+ * A panel in the top right corner with the frame time percentiles and histogram, the
+ * time per system, a few live counts and the allocation rate.
+ * <p>
+ * The profiler only measures while the panel is shown; showing it starts a fresh
+ * history. The text is refreshed a few times per second.
+ */
+public class ProfilerPanel extends BaseAppState {
+    private static final float REFRESH_SECONDS = 0.25f;
+    private static final float WIDTH = 440.0f;
+    private static final float MARGIN = 10.0f;
+    private static final int BAR_WIDTH = 30;
+
+    private static final double[] PERCENTILES = {0.50, 0.95, 0.99};
+    private static final double[] HISTOGRAM_BOUNDS = {8.3, 16.7, 33.3, 50.0};
+
+    private final FrameProfiler profiler;
+    private final BitmapFont font;
+    private final List<String> counterNames = new ArrayList<>();
+    private final List<IntSupplier> counters = new ArrayList<>();
+
+    private final double[] percentileMillis = new double[PERCENTILES.length];
+    private final int[] histogram = new int[HISTOGRAM_BOUNDS.length + 1];
+    private final StringBuilder report = new StringBuilder();
+
+    private final Node panelNode = new Node("profiler-panel");
+    private BitmapText text;
+    private Geometry background;
+    private float sinceRefresh = 0.0f;
+
+    public ProfilerPanel(final FrameProfiler profiler, final BitmapFont font) {
+        this.profiler = profiler;
+        this.font = font;
+
+        setEnabled(false);
+    }
+
+    /**
+     * Shows a live count, e.g. of bodies or emitters, in the panel.
+     */
+    public void addCounter(final String name, final IntSupplier counter) {
+        counterNames.add(name);
+        counters.add(counter);
+    }
+
+    public void toggle() {
+        setEnabled(!isEnabled());
+    }
+
+    @Override
+    public void update(final float tpf) {
+        sinceRefresh += tpf;
+
+        if (sinceRefresh >= REFRESH_SECONDS) {
+            sinceRefresh = 0.0f;
+            refresh();
+        }
+    }
+
+    private void refresh() {
+        report.setLength(0);
+
+        final int frames = profiler.getFrameCount();
+        profiler.getFramePercentiles(PERCENTILES, percentileMillis);
+        report.append(String.format("Frame (last %d): p50 %.1f  p95 %.1f  p99 %.1f ms%n",
+                frames, percentileMillis[0], percentileMillis[1], percentileMillis[2]));
+
+        profiler.getFrameHistogram(HISTOGRAM_BOUNDS, histogram);
+        for (int i = 0; i < histogram.length; ++i) {
+            report.append(i < HISTOGRAM_BOUNDS.length
+                    ? String.format("  <=%5.1f ms ", HISTOGRAM_BOUNDS[i])
+                    : String.format("  > %5.1f ms ", HISTOGRAM_BOUNDS[i - 1]));
+            appendBar(frames == 0 ? 0 : histogram[i] * BAR_WIDTH / frames);
+            report.append(' ').append(histogram[i]).append('\n');
+        }
+
+        report.append("Time per frame, avg / max ms:\n");
+        for (int i = 0; i < profiler.getSectionCount(); ++i) {
+            report.append(String.format("  %-24s %6.2f / %6.2f%n", profiler.getSectionName(i),
+                    profiler.getSectionAverageMillis(i), profiler.getSectionMaxMillis(i)));
+        }
+
+        for (int i = 0; i < counters.size(); ++i) {
+            report.append(String.format("%-26s %8d%n", counterNames.get(i), counters.get(i).getAsInt()));
+        }
+
+        final double allocationRate = profiler.getAllocationRate();
+        report.append(allocationRate < 0
+                ? "Allocation rate: unavailable"
+                : String.format("Allocation rate: %.1f MB/s", allocationRate / (1024 * 1024)));
+
+        text.setText(report);
+        layout();
+    }
+
+    private void appendBar(final int length) {
+        report.append('|');
+        for (int i = 0; i < BAR_WIDTH; ++i) {
+            report.append(i < length ? '#' : ' ');
+        }
+        report.append('|');
+    }
+
+    private void layout() {
+        final var camera = getApplication().getCamera();
+        final float height = text.getHeight() + 2 * MARGIN;
+
+        background.setMesh(new Quad(WIDTH, height));
+        background.setLocalTranslation(camera.getWidth() - WIDTH, camera.getHeight() - height, 0);
+        text.setLocalTranslation(camera.getWidth() - WIDTH + MARGIN, camera.getHeight() - MARGIN, 0);
+    }
+
+    @Override
+    protected void initialize(final Application app) {
+        text = new BitmapText(font);
+        text.setSize(font.getCharSet().getRenderedSize());
+        text.setColor(ColorRGBA.White);
+        text.setText("Profiling...");
+
+        final var material = new Material(app.getAssetManager(),
+                "Common/MatDefs/Misc/Unshaded.j3md");
+        material.setColor("Color", new ColorRGBA(0, 0, 0, 0.5f));
+        material.getAdditionalRenderState().setBlendMode(RenderState.BlendMode.Alpha);
+        material.setTransparent(true);
+
+        background = new Geometry("profiler-background", new Quad(WIDTH, 1));
+        background.setMaterial(material);
+
+        panelNode.attachChild(background);
+        panelNode.attachChild(text);
+        layout();
+    }
+
+    @Override
+    protected void cleanup(final Application app) {}
+
+    @Override
+    protected void onEnable() {
+        profiler.reset();
+        getApplication().setAppProfiler(profiler);
+        ((SimpleApplication) getApplication()).getGuiNode().attachChild(panelNode);
+        sinceRefresh = REFRESH_SECONDS;
+    }
+
+    @Override
+    protected void onDisable() {
+        getApplication().setAppProfiler(null);
+        panelNode.removeFromParent();
+    }
+}
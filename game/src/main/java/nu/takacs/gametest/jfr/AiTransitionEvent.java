@@ -0,0 +1,25 @@
+package nu.takacs.gametest.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * An NPC carrying out a new AI state on its character and animation.
+ */
+@Name("nu.takacs.gametest.AiTransition")
+@Label("AI Transition")
+@Category({"Game Test", "AI"})
+@Description("An NPC switching to a new AI state")
+@StackTrace(false)
+public class AiTransitionEvent extends Event {
+
+    @Label("Slot")
+    public int slot;
+
+    @Label("To State")
+    public String toState;
+}
@@ -0,0 +1,35 @@
+package nu.takacs.gametest.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A blast applied on the physics tick: how many bodies the entity grid handed over and
+ * how many of them were within reach.
+ */
+@Name("nu.takacs.gametest.Explosion")
+@Label("Explosion")
+@Category({"Game Test", "Physics"})
+@Description("A blast pushing and damaging the bodies around it")
+@StackTrace(false)
+public class ExplosionEvent extends Event {
+
+    @Label("X")
+    public float x;
+
+    @Label("Y")
+    public float y;
+
+    @Label("Z")
+    public float z;
+
+    @Label("Bodies Scanned")
+    public int bodiesScanned;
+
+    @Label("Bodies Affected")
+    public int bodiesAffected;
+}
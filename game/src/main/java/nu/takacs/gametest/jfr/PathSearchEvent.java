@@ -0,0 +1,29 @@
+package nu.takacs.gametest.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * An A* search on a path finder thread: how much of the grid it went through and
+ * whether it got to the goal.
+ */
+@Name("nu.takacs.gametest.PathSearch")
+@Label("Path Search")
+@Category({"Game Test", "AI"})
+@Description("A path search over the nav grid")
+@StackTrace(false)
+public class PathSearchEvent extends Event {
+
+    @Label("Cells Expanded")
+    public int cellsExpanded;
+
+    @Label("Waypoints")
+    public int waypoints;
+
+    @Label("Found")
+    public boolean found;
+}
@@ -0,0 +1,33 @@
+package nu.takacs.gametest.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Writing a save, or any other file going through the save service, on its IO thread.
+ */
+@Name("nu.takacs.gametest.Save")
+@Label("Save")
+@Category({"Game Test", "Save"})
+@Description("A file written by the save service")
+@StackTrace(false)
+public class SaveEvent extends Event {
+
+    @Label("Path")
+    public String path;
+
+    @Label("Bytes Written")
+    @DataAmount
+    public long bytesWritten;
+
+    @Label("Compressed")
+    public boolean compressed;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+}
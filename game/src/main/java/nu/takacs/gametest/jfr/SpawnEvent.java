@@ -0,0 +1,31 @@
+package nu.takacs.gametest.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A grenade, box, NPC or fire put into the world by the player.
+ */
+@Name("nu.takacs.gametest.Spawn")
+@Label("Spawn")
+@Category({"Game Test", "Gameplay"})
+@Description("An entity spawned by the player")
+@StackTrace(false)
+public class SpawnEvent extends Event {
+
+    @Label("Entity Type")
+    public String entityType;
+
+    @Label("X")
+    public float x;
+
+    @Label("Y")
+    public float y;
+
+    @Label("Z")
+    public float z;
+}
@@ -0,0 +1,23 @@
+package nu.takacs.gametest.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Copying the game state for a save, which happens on the render thread before the
+ * file is written in the background.
+ */
+@Name("nu.takacs.gametest.StateCapture")
+@Label("State Capture")
+@Category({"Game Test", "Save"})
+@Description("The game state copied on the render thread for a save")
+@StackTrace(false)
+public class StateCaptureEvent extends Event {
+
+    @Label("Entities")
+    public int entities;
+}
@@ -0,0 +1,226 @@
+package nu.takacs.gametest.loading;
+
+import com.jme3.app.Application;
+import com.jme3.app.SimpleApplication;
+import com.jme3.app.state.BaseAppState;
+import com.jme3.font.BitmapFont;
+import com.jme3.font.BitmapText;
+import com.jme3.math.ColorRGBA;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs the startup stages that don't touch the scene on a pool of loader threads,
+ * showing a loading screen meanwhile.
+ * <p>
+ * Stages are started with {@link #load} and {@link #then}, and run as soon as the
+ * stages they depend on are done. Once all of them have finished, the callback given
+ * to {@link #whenLoaded} runs on the render thread to attach the results to the scene.
+ * The time every stage took is logged, along with the time until the first frame the
+ * player can play.
+ */
+public class LoadingState extends BaseAppState {
+    private static final Logger LOG = LoggerFactory.getLogger(LoadingState.class);
+
+    private static final int MAX_THREADS = 4;
+
+    private final long startNanos = System.nanoTime();
+    private final List<CompletableFuture<?>> stages = new ArrayList<>();
+    private final List<Timing> timings = new ArrayList<>();
+    private final ExecutorService executor;
+
+    private BitmapText text;
+    private Runnable onLoaded;
+    private long loadedNanos = -1;
+    private boolean failed = false;
+
+    public LoadingState() {
+        // loading is partly waiting on disk, so use a couple of threads even on small machines
+        final int threads = Math.min(MAX_THREADS,
+                Math.max(2, Runtime.getRuntime().availableProcessors()));
+        final var threadNumber = new AtomicInteger();
+
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            final var thread = new Thread(runnable, "loader-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts a stage on the loader threads.
+     */
+    public <T> CompletableFuture<T> load(final String name, final Supplier<T> work) {
+        return track(CompletableFuture.supplyAsync(() -> timed(name, work), executor));
+    }
+
+    /**
+     * Starts a stage on the loader threads once {@code dependency} is done.
+     */
+    public <A, T> CompletableFuture<T> then(final String name,
+                                           final CompletableFuture<A> dependency,
+                                           final Function<A, T> work) {
+        return track(dependency.thenApplyAsync(value -> timed(name, () -> work.apply(value)), executor));
+    }
+
+    /**
+     * Sets what to run on the render thread once every stage is done.
+     */
+    public void whenLoaded(final Runnable onLoaded) {
+        this.onLoaded = onLoaded;
+    }
+
+    public boolean isLoaded() {
+        return loadedNanos >= 0;
+    }
+
+    @Override
+    public void update(final float tpf) {
+        if (failed) {
+            return;
+        }
+
+        if (loadedNanos >= 0) {
+            // the first frame after the scene was put together is the first one the player sees
+            final long millis = (System.nanoTime() - startNanos) / 1_000_000L;
+            LOG.info("First interactive frame after {} ms ({} ms since JVM start)",
+                    millis, ManagementFactory.getRuntimeMXBean().getUptime());
+
+            getStateManager().detach(this);
+            return;
+        }
+
+        int done = 0;
+        for (final var stage : stages) {
+            if (stage.isCompletedExceptionally()) {
+                fail(stage);
+                return;
+            }
+
+            if (stage.isDone()) {
+                ++done;
+            }
+        }
+
+        if (done < stages.size()) {
+            text.setText(String.format("Loading... %d/%d", done, stages.size()));
+            return;
+        }
+
+        final long attachStart = System.nanoTime();
+
+        if (onLoaded != null) {
+            onLoaded.run();
+        }
+
+        synchronized (timings) {
+            timings.add(new Timing("attach", Thread.currentThread().getName(), attachStart, System.nanoTime()));
+        }
+
+        loadedNanos = System.nanoTime();
+        logTimings();
+        executor.shutdown();
+        text.removeFromParent();
+    }
+
+    private <T> CompletableFuture<T> track(final CompletableFuture<T> stage) {
+        stages.add(stage);
+        return stage;
+    }
+
+    private <T> T timed(final String name, final Supplier<T> work) {
+        final long start = System.nanoTime();
+        final T result = work.get();
+
+        synchronized (timings) {
+            timings.add(new Timing(name, Thread.currentThread().getName(), start, System.nanoTime()));
+        }
+
+        return result;
+    }
+
+    private void fail(final CompletableFuture<?> stage) {
+        failed = true;
+
+        try {
+            stage.join();
+        } catch (final RuntimeException e) {
+            LOG.error("Loading failed", e.getCause() != null ? e.getCause() : e);
+            text.setText("Loading failed: " + (e.getCause() != null ? e.getCause().getMessage() : e.getMessage()));
+        }
+
+        executor.shutdownNow();
+    }
+
+    private void logTimings() {
+        final var report = new StringBuilder("Loading took ")
+                .append((loadedNanos - startNanos) / 1_000_000L).append(" ms:");
+
+        synchronized (timings) {
+            timings.sort((a, b) -> Long.compare(a.start, b.start));
+
+            for (final var timing : timings) {
+                report.append(String.format("%n  %-20s %6d ms  (starts at %5d ms, %s)",
+                        timing.name,
+                        (timing.end - timing.start) / 1_000_000L,
+                        (timing.start - startNanos) / 1_000_000L,
+                        timing.thread));
+            }
+        }
+
+        LOG.info(report.toString());
+    }
+
+    @Override
+    protected void initialize(final Application app) {
+        final var simpleApp = (SimpleApplication) app;
+        final BitmapFont font = app.getAssetManager().loadFont("Interface/Fonts/Default.fnt");
+        final var camera = app.getCamera();
+
+        text = new BitmapText(font);
+        text.setSize(font.getCharSet().getRenderedSize() * 2f);
+        text.setColor(ColorRGBA.White);
+        text.setText("Loading...");
+        text.setLocalTranslation(
+                (camera.getWidth() - text.getLineWidth()) / 2f,
+                (camera.getHeight() + text.getLineHeight()) / 2f, 0f);
+
+        simpleApp.getGuiNode().attachChild(text);
+    }
+
+    @Override
+    protected void cleanup(final Application app) {
+        executor.shutdownNow();
+        text.removeFromParent();
+    }
+
+    @Override
+    protected void onEnable() {}
+
+    @Override
+    protected void onDisable() {}
+
+    private static final class Timing {
+        private final String name;
+        private final String thread;
+        private final long start;
+        private final long end;
+
+        private Timing(final String name, final String thread, final long start, final long end) {
+            this.name = name;
+            this.thread = thread;
+            this.start = start;
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package nu.takacs.gametest.nav;
+
+import com.jme3.math.Vector3f;
+
+/**
+ * Where NPCs can walk on a heightmap terrain, as a grid of square cells over the ground
+ * plane. A cell is walkable when the ground in it rises no more than the steepest slope
+ * allows, and an NPC can step to any of the eight neighbouring cells that is walkable
+ * and no steeper to get to. Never changes once built, so any thread can read it.
+ */
+public final class NavGrid {
+
+    private final int width;
+    private final int depth;
+    private final float cellSize;
+    private final float originX;
+    private final float originZ;
+    private final float maxStep;
+    private final float[] height;
+    private final boolean[] walkable;
+
+    private NavGrid(final int width, final int depth, final float cellSize,
+                    final float originX, final float originZ, final float maxStep,
+                    final float[] height, final boolean[] walkable) {
+        this.width = width;
+        this.depth = depth;
+        this.cellSize = cellSize;
+        this.originX = originX;
+        this.originZ = originZ;
+        this.maxStep = maxStep;
+        this.height = height;
+        this.walkable = walkable;
+    }
+
+    /**
+     * Builds the grid for a square, centered heightmap terrain.
+     *
+     * @param heights        the heightmap, row by row along z
+     * @param size           the number of samples along a side
+     * @param samplesPerCell how many sample spacings make up the side of a cell
+     * @param scale          the terrain's scale; x and z are expected to be the same
+     * @param translation    the terrain's translation
+     * @param maxSlope       the steepest rise over run an NPC can walk
+     */
+    public static NavGrid fromHeightMap(final float[] heights,
+                                        final int size,
+                                        final int samplesPerCell,
+                                        final Vector3f scale,
+                                        final Vector3f translation,
+                                        final float maxSlope) {
+        if (heights.length != size * size) {
+            throw new IllegalArgumentException("Expected " + size * size + " heights, got " + heights.length);
+        }
+
+        final int cells = (size - 1) / samplesPerCell;
+        final float cellSize = samplesPerCell * scale.x;
+        final float maxStep = maxSlope * cellSize;
+        final float half = (size - 1) / 2.0f;
+
+        final float[] height = new float[cells * cells];
+        final boolean[] walkable = new boolean[cells * cells];
+
+        for (int cz = 0; cz < cells; ++cz) {
+            for (int cx = 0; cx < cells; ++cx) {
+                float min = Float.POSITIVE_INFINITY;
+                float max = Float.NEGATIVE_INFINITY;
+
+                for (int row = cz * samplesPerCell; row <= (cz + 1) * samplesPerCell; ++row) {
+                    for (int column = cx * samplesPerCell; column <= (cx + 1) * samplesPerCell; ++column) {
+                        final float sample = heights[row * size + column];
+                        min = Math.min(min, sample);
+                        max = Math.max(max, sample);
+                    }
+                }
+
+                final int center = (cz * samplesPerCell + samplesPerCell / 2) * size
+                        + cx * samplesPerCell + samplesPerCell / 2;
+                final int cell = cz * cells + cx;
+
+                height[cell] = heights[center] * scale.y + translation.y;
+                walkable[cell] = (max - min) * scale.y <= maxStep;
+            }
+        }
+
+        return new NavGrid(cells, cells, cellSize,
+                translation.x - half * scale.x, translation.z - half * scale.z,
+                maxStep, height, walkable);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getCellCount() {
+        return width * depth;
+    }
+
+    public float getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * Returns the cell under the point, or -1 if it is off the grid.
+     */
+    public int cellAt(final float x, final float z) {
+        final int cx = (int) Math.floor((x - originX) / cellSize);
+        final int cz = (int) Math.floor((z - originZ) / cellSize);
+
+        if (cx < 0 || cz < 0 || cx >= width || cz >= depth) {
+            return -1;
+        }
+
+        return cz * width + cx;
+    }
+
+    public int cellX(final int cell) {
+        return cell % width;
+    }
+
+    public int cellZ(final int cell) {
+        return cell / width;
+    }
+
+    public float centerX(final int cell) {
+        return originX + (cell % width + 0.5f) * cellSize;
+    }
+
+    public float centerZ(final int cell) {
+        return originZ + (cell / width + 0.5f) * cellSize;
+    }
+
+    public float getHeight(final int cell) {
+        return height[cell];
+    }
+
+    public boolean isWalkable(final int cell) {
+        return walkable[cell];
+    }
+
+    /**
+     * Returns whether an NPC in {@code from} can step over to the neighbouring cell
+     * {@code dx}, {@code dz} away. Diagonal steps also need both cells beside them to be
+     * walkable, so paths don't cut corners.
+     */
+    public boolean canStep(final int from, final int dx, final int dz) {
+        final int x = from % width + dx;
+        final int z = from / width + dz;
+
+        if (x < 0 || z < 0 || x >= width || z >= depth) {
+            return false;
+        }
+
+        final int to = z * width + x;
+
+        if (!walkable[to]) {
+            return false;
+        }
+
+        if (dx != 0 && dz != 0) {
+            if (!walkable[from + dx] || !walkable[from + dz * width]) {
+                return false;
+            }
+
+            return Math.abs(height[to] - height[from]) <= maxStep * (float) Math.sqrt(2.0);
+        }
+
+        return Math.abs(height[to] - height[from]) <= maxStep;
+    }
+
+    /**
+     * Returns the walkable cell closest to {@code cell}, looking at most {@code radius}
+     * cells away, or -1 if there is none.
+     */
+    public int nearestWalkable(final int cell, final int radius) {
+        if (cell < 0) {
+            return -1;
+        }
+
+        if (walkable[cell]) {
+            return cell;
+        }
+
+        final int x = cell % width;
+        final int z = cell / width;
+
+        for (int ring = 1; ring <= radius; ++ring) {
+            int best = -1;
+            int bestDistance = Integer.MAX_VALUE;
+
+            for (int dz = -ring; dz <= ring; ++dz) {
+                for (int dx = -ring; dx <= ring; ++dx) {
+                    if (Math.max(Math.abs(dx), Math.abs(dz)) != ring) {
+                        continue;
+                    }
+
+                    final int nx = x + dx;
+                    final int nz = z + dz;
+
+                    if (nx < 0 || nz < 0 || nx >= width || nz >= depth || !walkable[nz * width + nx]) {
+                        continue;
+                    }
+
+                    final int distance = dx * dx + dz * dz;
+                    if (distance < bestDistance) {
+                        best = nz * width + nx;
+                        bestDistance = distance;
+                    }
+                }
+            }
+
+            if (best != -1) {
+                return best;
+            }
+        }
+
+        return -1;
+    }
+}
@@ -0,0 +1,36 @@
+package nu.takacs.gametest.nav;
+
+/**
+ * Waypoints across the ground plane, from the first step after the start to the goal.
+ * Paths are shared between everyone who asked for the same one, so they never change.
+ */
+public final class Path {
+
+    /**
+     * There is no way from the start to the goal.
+     */
+    public static final Path NONE = new Path(new float[0]);
+
+    // x and z of every waypoint, interleaved
+    private final float[] points;
+
+    Path(final float[] points) {
+        this.points = points;
+    }
+
+    public boolean isFound() {
+        return points.length > 0;
+    }
+
+    public int getPointCount() {
+        return points.length / 2;
+    }
+
+    public float getX(final int point) {
+        return points[point * 2];
+    }
+
+    public float getZ(final int point) {
+        return points[point * 2 + 1];
+    }
+}
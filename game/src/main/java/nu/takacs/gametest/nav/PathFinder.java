@@ -0,0 +1,213 @@
+package nu.takacs.gametest.nav;
+
+import java.util.Arrays;
+
+/**
+ * A* over a {@link NavGrid}, with eight-way steps and the octile distance as the
+ * heuristic. Keeps its scratch arrays from search to search, so it belongs to one
+ * thread at a time.
+ */
+public final class PathFinder {
+
+    private static final float DIAGONAL = (float) Math.sqrt(2.0);
+
+    private final NavGrid grid;
+
+    // per cell; an entry is only valid if its stamp is the current search's
+    private final float[] cost;
+    private final int[] cameFrom;
+    private final int[] reached;
+    private final int[] closed;
+    private int stamp = 0;
+
+    // open list as a binary heap; a cell may be in it more than once, stale entries are skipped
+    private int[] heapCell = new int[256];
+    private float[] heapPriority = new float[256];
+    private int heapSize = 0;
+
+    private int lastExpanded = 0;
+
+    public PathFinder(final NavGrid grid) {
+        this.grid = grid;
+
+        final int cells = grid.getCellCount();
+        cost = new float[cells];
+        cameFrom = new int[cells];
+        reached = new int[cells];
+        closed = new int[cells];
+    }
+
+    /**
+     * Returns the shortest path between two walkable cells, or {@link Path#NONE} if
+     * the goal can't be reached from the start.
+     */
+    public Path find(final int start, final int goal) {
+        if (start == goal) {
+            lastExpanded = 0;
+            return new Path(new float[]{grid.centerX(goal), grid.centerZ(goal)});
+        }
+
+        nextStamp();
+        heapSize = 0;
+        lastExpanded = 0;
+
+        final int goalX = grid.cellX(goal);
+        final int goalZ = grid.cellZ(goal);
+
+        cost[start] = 0.0f;
+        reached[start] = stamp;
+        push(start, heuristic(start, goalX, goalZ));
+
+        while (heapSize > 0) {
+            final int cell = pop();
+
+            if (closed[cell] == stamp) {
+                continue;
+            }
+
+            closed[cell] = stamp;
+            ++lastExpanded;
+
+            if (cell == goal) {
+                return reconstruct(start, goal);
+            }
+
+            final float cellCost = cost[cell];
+
+            for (int dz = -1; dz <= 1; ++dz) {
+                for (int dx = -1; dx <= 1; ++dx) {
+                    if ((dx == 0 && dz == 0) || !grid.canStep(cell, dx, dz)) {
+                        continue;
+                    }
+
+                    final int next = cell + dz * grid.getWidth() + dx;
+
+                    if (closed[next] == stamp) {
+                        continue;
+                    }
+
+                    final float nextCost = cellCost + (dx != 0 && dz != 0 ? DIAGONAL : 1.0f);
+
+                    if (reached[next] != stamp || nextCost < cost[next]) {
+                        reached[next] = stamp;
+                        cost[next] = nextCost;
+                        cameFrom[next] = cell;
+                        push(next, nextCost + heuristic(next, goalX, goalZ));
+                    }
+                }
+            }
+        }
+
+        return Path.NONE;
+    }
+
+    /**
+     * Returns how many cells the last search expanded.
+     */
+    public int getLastExpanded() {
+        return lastExpanded;
+    }
+
+    private float heuristic(final int cell, final int goalX, final int goalZ) {
+        final int dx = Math.abs(grid.cellX(cell) - goalX);
+        final int dz = Math.abs(grid.cellZ(cell) - goalZ);
+
+        return dx + dz + (DIAGONAL - 2.0f) * Math.min(dx, dz);
+    }
+
+    /**
+     * Walks back from the goal and keeps only the cells where the path turns, and the goal.
+     */
+    private Path reconstruct(final int start, final int goal) {
+        int length = 0;
+        for (int cell = goal; cell != start; cell = cameFrom[cell]) {
+            ++length;
+        }
+
+        final int[] cells = new int[length + 1];
+        for (int i = length, cell = goal; i >= 0; --i, cell = cameFrom[cell]) {
+            cells[i] = cell;
+        }
+
+        final float[] points = new float[length * 2];
+        int count = 0;
+
+        for (int i = 1; i <= length; ++i) {
+            final boolean turns = i == length
+                    || cells[i] - cells[i - 1] != cells[i + 1] - cells[i];
+
+            if (turns) {
+                points[count * 2] = grid.centerX(cells[i]);
+                points[count * 2 + 1] = grid.centerZ(cells[i]);
+                ++count;
+            }
+        }
+
+        return new Path(Arrays.copyOf(points, count * 2));
+    }
+
+    private void nextStamp() {
+        if (++stamp == Integer.MAX_VALUE) {
+            Arrays.fill(reached, 0);
+            Arrays.fill(closed, 0);
+            stamp = 1;
+        }
+    }
+
+    private void push(final int cell, final float priority) {
+        if (heapSize == heapCell.length) {
+            heapCell = Arrays.copyOf(heapCell, heapSize * 2);
+            heapPriority = Arrays.copyOf(heapPriority, heapSize * 2);
+        }
+
+        int i = heapSize++;
+
+        while (i > 0) {
+            final int parent = (i - 1) >>> 1;
+
+            if (heapPriority[parent] <= priority) {
+                break;
+            }
+
+            heapCell[i] = heapCell[parent];
+            heapPriority[i] = heapPriority[parent];
+            i = parent;
+        }
+
+        heapCell[i] = cell;
+        heapPriority[i] = priority;
+    }
+
+    private int pop() {
+        final int top = heapCell[0];
+        final int lastCell = heapCell[--heapSize];
+        final float lastPriority = heapPriority[heapSize];
+
+        int i = 0;
+
+        while (true) {
+            int child = i * 2 + 1;
+
+            if (child >= heapSize) {
+                break;
+            }
+
+            if (child + 1 < heapSize && heapPriority[child + 1] < heapPriority[child]) {
+                ++child;
+            }
+
+            if (heapPriority[child] >= lastPriority) {
+                break;
+            }
+
+            heapCell[i] = heapCell[child];
+            heapPriority[i] = heapPriority[child];
+            i = child;
+        }
+
+        heapCell[i] = lastCell;
+        heapPriority[i] = lastPriority;
+
+        return top;
+    }
+}
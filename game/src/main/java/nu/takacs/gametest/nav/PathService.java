@@ -0,0 +1,167 @@
+package nu.takacs.gametest.nav;
+
+import com.jme3.math.Vector3f;
+import nu.takacs.gametest.jfr.PathSearchEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Finds paths over a {@link NavGrid} on a pool of worker threads, so searching never
+ * holds up a frame. A request returns a future straight away, which the caller checks
+ * on later frames.
+ * <p>
+ * Requests are snapped to the grid: start and goal go to the nearest walkable cell, and
+ * the path runs between the cell centers. Paths are cached by start and goal cell, the
+ * least recently asked for going first once the cache is full, and a request for a path
+ * that is still being searched for shares the search already under way.
+ * <p>
+ * With no threads, searches run right away on the caller's thread instead, so a replay
+ * sees every path as soon as it asks, the same as when it was recorded.
+ */
+public class PathService {
+    private static final Logger LOG = LoggerFactory.getLogger(PathService.class);
+
+    // how far, in cells, to look for a walkable cell around a start or goal that isn't
+    private static final int SNAP_RADIUS = 3;
+
+    private final NavGrid grid;
+    private final int cacheSize;
+    private final ExecutorService executor;
+    private final ThreadLocal<PathFinder> finders;
+
+    // guarded by this; in access order, so the eldest entry is the least recently used
+    private final LinkedHashMap<Long, CompletableFuture<Path>> cache;
+
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    // guarded by this
+    private int cacheHitCount = 0;
+
+    public PathService(final NavGrid grid, final int threads, final int cacheSize) {
+        this.grid = grid;
+        this.cacheSize = cacheSize;
+        this.finders = ThreadLocal.withInitial(() -> new PathFinder(grid));
+        this.cache = new LinkedHashMap<>(cacheSize, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Long, CompletableFuture<Path>> eldest) {
+                return size() > PathService.this.cacheSize;
+            }
+        };
+
+        if (threads <= 0) {
+            executor = null;
+            return;
+        }
+
+        final var threadNumber = new AtomicInteger();
+
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            final var thread = new Thread(runnable, "path-finder-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns the path from {@code from} to {@code to}, once it has been found. Completes
+     * with {@link Path#NONE} if there is none, or if either end is off the grid or
+     * nowhere near walkable ground.
+     */
+    public synchronized CompletableFuture<Path> findPath(final Vector3f from, final Vector3f to) {
+        final int start = grid.nearestWalkable(grid.cellAt(from.x, from.z), SNAP_RADIUS);
+        final int goal = grid.nearestWalkable(grid.cellAt(to.x, to.z), SNAP_RADIUS);
+
+        if (start == -1 || goal == -1) {
+            return CompletableFuture.completedFuture(Path.NONE);
+        }
+
+        final Long key = (long) start << 32 | goal;
+        final var cached = cache.get(key);
+
+        if (cached != null) {
+            ++cacheHitCount;
+            return cached;
+        }
+
+        if (executor == null) {
+            final var found = CompletableFuture.completedFuture(search(start, goal));
+            cache.put(key, found);
+            return found;
+        }
+
+        pendingCount.incrementAndGet();
+
+        final var search = CompletableFuture.supplyAsync(() -> search(start, goal), executor);
+        cache.put(key, search);
+
+        search.whenComplete((path, e) -> {
+            pendingCount.decrementAndGet();
+
+            if (e != null) {
+                LOG.warn("Path search from cell {} to {} failed", start, goal, e);
+
+                synchronized (this) {
+                    cache.remove(key, search);
+                }
+            }
+        });
+
+        return search;
+    }
+
+    /**
+     * Returns the number of searches queued or running.
+     */
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    public synchronized int getCacheHitCount() {
+        return cacheHitCount;
+    }
+
+    /**
+     * Drops the searches still queued and stops the workers.
+     */
+    public void shutdown() {
+        if (executor == null) {
+            return;
+        }
+
+        executor.shutdownNow();
+
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                LOG.warn("Gave up waiting for the path finders to stop");
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Path search(final int start, final int goal) {
+        final var event = new PathSearchEvent();
+        event.begin();
+
+        final var finder = finders.get();
+        final var path = finder.find(start, goal);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.cellsExpanded = finder.getLastExpanded();
+            event.waypoints = path.getPointCount();
+            event.found = path.isFound();
+            event.commit();
+        }
+
+        return path;
+    }
+}
@@ -0,0 +1,505 @@
+package nu.takacs.gametest.particle;
+
+import com.jme3.app.Application;
+import com.jme3.app.LegacyApplication;
+import com.jme3.app.state.BaseAppState;
+import com.jme3.material.Material;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.queue.RenderQueue;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.util.BufferUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Every fire in the game, as one particle system drawn from a single mesh.
+ * <p>
+ * A fire is an emitter handle, an int that stays valid until the fire is removed.
+ * It burns at a fixed spot or follows a spatial. Particles live in primitive arrays,
+ * packed so the live ones come first. Each update drops the particles that have
+ * burnt out or whose fire is gone, lets every fire emit, and then moves the
+ * particles and writes them into the mesh as camera-facing quads in one pass,
+ * which with enough particles is split across the fork-join pool. The mesh only
+ * holds the live particles, so the cost follows the particle count rather than the
+ * number of fires.
+ * <p>
+ * Particles are capped. When the fires together want more than the room left, each
+ * burns at the same reduced rate, so they all thin out rather than some going dark.
+ */
+public class FireParticleState extends BaseAppState {
+
+    public static final String GEOMETRY_NAME = "FireParticles";
+
+    private static final int INITIAL_PARTICLES = 1024;
+    private static final int MAX_PARTICLES = 1 << 16;
+    private static final int INITIAL_EMITTERS = 64;
+    private static final int INDEX_BITS = 20;
+    private static final int INDEX_MASK = (1 << INDEX_BITS) - 1;
+    private static final int GENERATION_MASK = (1 << (31 - INDEX_BITS)) - 1;
+    private static final int PARALLEL_THRESHOLD = 8192;
+    private static final int CHUNK_SIZE = 2048;
+
+    // the look of a fire: a 2x2 flame animation, yellow to red, shrinking as it rises
+    private static final float PARTICLES_PER_SECOND = 30.0f;
+    private static final float LOW_LIFE = 1.0f;
+    private static final float HIGH_LIFE = 2.0f;
+    private static final float START_SIZE = 2.0f;
+    private static final float END_SIZE = 0.5f;
+    private static final float START_ALPHA = 0.5f;
+    private static final float END_ALPHA = 1.0f;
+    private static final float EMITTER_RADIUS = 2.0f;
+    private static final float RISE_SPEED = 2.0f;
+    private static final int IMAGES_X = 2;
+    private static final int IMAGES_Y = 2;
+
+    private final Material material;
+    private final Mesh mesh = new Mesh();
+    private final Geometry geometry = new Geometry(GEOMETRY_NAME, mesh);
+    private Camera camera;
+    private long random = 1L;
+    private boolean parallel = true;
+
+    // emitters, by the index part of their handle; handle is -1 for a free slot
+    private int[] handles = new int[INITIAL_EMITTERS];
+    private int[] generation = new int[INITIAL_EMITTERS];
+    private Spatial[] follow = new Spatial[INITIAL_EMITTERS];
+    private float[] emitterX = new float[INITIAL_EMITTERS];
+    private float[] emitterY = new float[INITIAL_EMITTERS];
+    private float[] emitterZ = new float[INITIAL_EMITTERS];
+    private float[] owed = new float[INITIAL_EMITTERS];
+    private int emitterSlots = 0;
+    private int emitterCount = 0;
+    private int[] freeEmitters = new int[INITIAL_EMITTERS];
+    private int freeEmitterCount = 0;
+    // the emitter served first next frame, so rounding doesn't always favour the same fires
+    private int firstEmitter = 0;
+
+    // particles, live ones in [0, particleCount)
+    private int particleCount = 0;
+    private int drawnCount = -1;
+    private int[] owner = new int[INITIAL_PARTICLES];
+    private float[] x = new float[INITIAL_PARTICLES];
+    private float[] y = new float[INITIAL_PARTICLES];
+    private float[] z = new float[INITIAL_PARTICLES];
+    private float[] age = new float[INITIAL_PARTICLES];
+    private float[] life = new float[INITIAL_PARTICLES];
+
+    private FloatBuffer positions;
+    private FloatBuffer texCoords;
+    private ByteBuffer colors;
+    private IntBuffer indices;
+
+    // the camera's left and up axes, copied before the write pass
+    private float leftX, leftY, leftZ;
+    private float upX, upY, upZ;
+
+    public FireParticleState(final LegacyApplication application) {
+        material = new Material(application.getAssetManager(),
+                "Common/MatDefs/Misc/Particle.j3md");
+        material.setTexture("Texture", application.getAssetManager()
+                .loadTexture("Effects/Explosion/flame.png"));
+
+        geometry.setMaterial(material);
+        geometry.setQueueBucket(RenderQueue.Bucket.Transparent);
+        geometry.setShadowMode(RenderQueue.ShadowMode.Off);
+        // the particles are written in world space every frame, so there is no bound to cull by
+        geometry.setCullHint(Spatial.CullHint.Always);
+        geometry.setBatchHint(Spatial.BatchHint.Never);
+
+        createBuffers(INITIAL_PARTICLES);
+    }
+
+    /**
+     * Returns the geometry all fires are drawn with. Attach it to the scene, with no
+     * transform of its own.
+     */
+    public Geometry getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * Starts a fire that follows the spatial's world translation, and returns its handle.
+     */
+    public int addFire(final Spatial spatial) {
+        final int id = addFire(spatial.getWorldTranslation());
+        follow[id & INDEX_MASK] = spatial;
+        return id;
+    }
+
+    /**
+     * Starts a fire at a fixed location, and returns its handle.
+     */
+    public int addFire(final Vector3f location) {
+        final int index;
+
+        if (freeEmitterCount > 0) {
+            index = freeEmitters[--freeEmitterCount];
+        } else {
+            if (emitterSlots == handles.length) {
+                growEmitters();
+            }
+            index = emitterSlots++;
+        }
+
+        final int id = generation[index] << INDEX_BITS | index;
+
+        handles[index] = id;
+        follow[index] = null;
+        emitterX[index] = location.x;
+        emitterY[index] = location.y;
+        emitterZ[index] = location.z;
+        owed[index] = 0.0f;
+        ++emitterCount;
+
+        return id;
+    }
+
+    /**
+     * Puts out the fire. Its particles go with it on the next update.
+     */
+    public void removeFire(final int id) {
+        if (!isBurning(id)) {
+            return;
+        }
+
+        final int index = id & INDEX_MASK;
+
+        handles[index] = -1;
+        follow[index] = null;
+        generation[index] = (generation[index] + 1) & GENERATION_MASK;
+        --emitterCount;
+
+        if (freeEmitterCount == freeEmitters.length) {
+            freeEmitters = Arrays.copyOf(freeEmitters, freeEmitters.length * 2);
+        }
+        freeEmitters[freeEmitterCount++] = index;
+    }
+
+    public boolean isBurning(final int id) {
+        return id >= 0 && (id & INDEX_MASK) < emitterSlots && handles[id & INDEX_MASK] == id;
+    }
+
+    public int getFireCount() {
+        return emitterCount;
+    }
+
+    public int getParticleCount() {
+        return particleCount;
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public void setParallel(final boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    @Override
+    public void update(final float tpf) {
+        cull(tpf);
+        emit(tpf);
+
+        positions.limit(particleCount * 12);
+        texCoords.limit(particleCount * 8);
+        colors.limit(particleCount * 16);
+
+        final var left = camera.getLeft();
+        final var up = camera.getUp();
+        leftX = left.x;
+        leftY = left.y;
+        leftZ = left.z;
+        upX = up.x;
+        upY = up.y;
+        upZ = up.z;
+
+        if (parallel && particleCount >= PARALLEL_THRESHOLD) {
+            ForkJoinPool.commonPool().invoke(new StepTask(0, particleCount, tpf));
+        } else {
+            step(0, particleCount, tpf);
+        }
+
+        uploadMesh();
+    }
+
+    /**
+     * Drops the particles that burn out during this frame or lost their fire, moving the
+     * last live particle into each gap.
+     */
+    private void cull(final float tpf) {
+        int i = 0;
+
+        while (i < particleCount) {
+            if (age[i] + tpf < life[i] && handles[owner[i] & INDEX_MASK] == owner[i]) {
+                ++i;
+                continue;
+            }
+
+            final int last = --particleCount;
+            owner[i] = owner[last];
+            x[i] = x[last];
+            y[i] = y[last];
+            z[i] = z[last];
+            age[i] = age[last];
+            life[i] = life[last];
+        }
+    }
+
+    private void emit(final float tpf) {
+        if (emitterSlots == 0) {
+            return;
+        }
+
+        final float demand = emitterCount * PARTICLES_PER_SECOND * tpf;
+        final float room = MAX_PARTICLES - particleCount;
+        final float rate = PARTICLES_PER_SECOND * (demand > room ? room / demand : 1.0f);
+
+        if (++firstEmitter >= emitterSlots) {
+            firstEmitter = 0;
+        }
+
+        for (int n = 0, e = firstEmitter; n < emitterSlots; ++n, e = e + 1 == emitterSlots ? 0 : e + 1) {
+            final int id = handles[e];
+
+            if (id == -1) {
+                continue;
+            }
+
+            if (follow[e] != null) {
+                final var location = follow[e].getWorldTranslation();
+                emitterX[e] = location.x;
+                emitterY[e] = location.y;
+                emitterZ[e] = location.z;
+            }
+
+            float due = owed[e] + rate * tpf;
+
+            for (; due >= 1.0f; due -= 1.0f) {
+                if (particleCount == owner.length && !growParticles()) {
+                    // at the limit; fires don't save up for later
+                    due = 0.0f;
+                    break;
+                }
+
+                spawn(id, emitterX[e], emitterY[e], emitterZ[e]);
+            }
+
+            owed[e] = due;
+        }
+    }
+
+    private void spawn(final int id, final float centerX, final float centerY, final float centerZ) {
+        // a random point in a sphere around the fire
+        float dx, dy, dz, lengthSquared;
+        do {
+            dx = nextFloat() * 2 - 1;
+            dy = nextFloat() * 2 - 1;
+            dz = nextFloat() * 2 - 1;
+            lengthSquared = dx * dx + dy * dy + dz * dz;
+        } while (lengthSquared > 1.0f);
+
+        final int i = particleCount++;
+
+        owner[i] = id;
+        x[i] = centerX + dx * EMITTER_RADIUS;
+        y[i] = centerY + dy * EMITTER_RADIUS;
+        z[i] = centerZ + dz * EMITTER_RADIUS;
+        // stepped forward by the first update
+        age[i] = 0.0f;
+        life[i] = LOW_LIFE + nextFloat() * (HIGH_LIFE - LOW_LIFE);
+    }
+
+    /**
+     * Ages and moves the particles in the range, and writes their quads. Touches nothing
+     * outside the range, so ranges can be stepped in parallel.
+     */
+    private void step(final int from, final int to, final float tpf) {
+        for (int i = from; i < to; ++i) {
+            final float particleAge = age[i] + tpf;
+            age[i] = particleAge;
+
+            final float px = x[i];
+            final float py = y[i] + RISE_SPEED * tpf;
+            final float pz = z[i];
+            y[i] = py;
+
+            final float progress = particleAge / life[i];
+            final float size = START_SIZE + (END_SIZE - START_SIZE) * progress;
+
+            final float lx = leftX * size, ly = leftY * size, lz = leftZ * size;
+            final float ux = upX * size, uy = upY * size, uz = upZ * size;
+
+            int p = i * 12;
+            positions.put(p, px + lx + ux).put(p + 1, py + ly + uy).put(p + 2, pz + lz + uz);
+            positions.put(p + 3, px - lx + ux).put(p + 4, py - ly + uy).put(p + 5, pz - lz + uz);
+            positions.put(p + 6, px + lx - ux).put(p + 7, py + ly - uy).put(p + 8, pz + lz - uz);
+            positions.put(p + 9, px - lx - ux).put(p + 10, py - ly - uy).put(p + 11, pz - lz - uz);
+
+            final int image = Math.min((int) (progress * (IMAGES_X * IMAGES_Y)), IMAGES_X * IMAGES_Y - 1);
+            final float startX = (float) (image % IMAGES_X) / IMAGES_X;
+            final float startY = (float) (image / IMAGES_X) / IMAGES_Y;
+            final float endX = startX + 1.0f / IMAGES_X;
+            final float endY = startY + 1.0f / IMAGES_Y;
+
+            p = i * 8;
+            texCoords.put(p, startX).put(p + 1, endY);
+            texCoords.put(p + 2, endX).put(p + 3, endY);
+            texCoords.put(p + 4, startX).put(p + 5, startY);
+            texCoords.put(p + 6, endX).put(p + 7, startY);
+
+            // yellow to red, packed so the little endian buffer holds R, G, B, A in that order
+            final int green = (int) ((1.0f - progress) * 255.0f);
+            final int alpha = (int) ((START_ALPHA + (END_ALPHA - START_ALPHA) * progress) * 255.0f);
+            final int color = alpha << 24 | green << 8 | 0xFF;
+
+            p = i * 16;
+            colors.putInt(p, color).putInt(p + 4, color).putInt(p + 8, color).putInt(p + 12, color);
+        }
+    }
+
+    private void uploadMesh() {
+        geometry.setCullHint(particleCount == 0 ? Spatial.CullHint.Always : Spatial.CullHint.Never);
+
+        if (particleCount == 0) {
+            return;
+        }
+
+        mesh.getBuffer(VertexBuffer.Type.Position).updateData(positions);
+        mesh.getBuffer(VertexBuffer.Type.TexCoord).updateData(texCoords);
+        mesh.getBuffer(VertexBuffer.Type.Color).updateData(colors);
+
+        if (particleCount != drawnCount) {
+            // the quads' indices never change, only how many of them are drawn
+            indices.limit(particleCount * 6);
+            mesh.getBuffer(VertexBuffer.Type.Index).updateData(indices);
+            mesh.updateCounts();
+            drawnCount = particleCount;
+        }
+    }
+
+    private void createBuffers(final int capacity) {
+        positions = BufferUtils.createFloatBuffer(capacity * 12);
+        texCoords = BufferUtils.createFloatBuffer(capacity * 8);
+        colors = BufferUtils.createByteBuffer(capacity * 16).order(ByteOrder.LITTLE_ENDIAN);
+        indices = BufferUtils.createIntBuffer(capacity * 6);
+
+        for (int i = 0; i < capacity; ++i) {
+            final int vertex = i * 4;
+            indices.put(vertex + 1).put(vertex).put(vertex + 2)
+                    .put(vertex + 1).put(vertex + 2).put(vertex + 3);
+        }
+        indices.flip();
+
+        mesh.clearBuffer(VertexBuffer.Type.Position);
+        mesh.clearBuffer(VertexBuffer.Type.TexCoord);
+        mesh.clearBuffer(VertexBuffer.Type.Color);
+        mesh.clearBuffer(VertexBuffer.Type.Index);
+
+        mesh.setBuffer(VertexBuffer.Type.Position, 3, positions);
+        mesh.setBuffer(VertexBuffer.Type.TexCoord, 2, texCoords);
+        mesh.setBuffer(VertexBuffer.Type.Color, 4, VertexBuffer.Format.UnsignedByte, colors);
+        mesh.getBuffer(VertexBuffer.Type.Color).setNormalized(true);
+        mesh.setBuffer(VertexBuffer.Type.Index, 3, indices);
+
+        mesh.getBuffer(VertexBuffer.Type.Position).setUsage(VertexBuffer.Usage.Stream);
+        mesh.getBuffer(VertexBuffer.Type.TexCoord).setUsage(VertexBuffer.Usage.Stream);
+        mesh.getBuffer(VertexBuffer.Type.Color).setUsage(VertexBuffer.Usage.Stream);
+
+        drawnCount = -1;
+    }
+
+    /**
+     * Doubles the particle capacity, up to the limit. Returns false if already there.
+     */
+    private boolean growParticles() {
+        final int capacity = owner.length * 2;
+
+        if (capacity > MAX_PARTICLES) {
+            return false;
+        }
+
+        owner = Arrays.copyOf(owner, capacity);
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        z = Arrays.copyOf(z, capacity);
+        age = Arrays.copyOf(age, capacity);
+        life = Arrays.copyOf(life, capacity);
+
+        createBuffers(capacity);
+
+        return true;
+    }
+
+    private void growEmitters() {
+        final int capacity = handles.length * 2;
+
+        handles = Arrays.copyOf(handles, capacity);
+        generation = Arrays.copyOf(generation, capacity);
+        follow = Arrays.copyOf(follow, capacity);
+        emitterX = Arrays.copyOf(emitterX, capacity);
+        emitterY = Arrays.copyOf(emitterY, capacity);
+        emitterZ = Arrays.copyOf(emitterZ, capacity);
+        owed = Arrays.copyOf(owed, capacity);
+    }
+
+    private float nextFloat() {
+        final long value = mix(random += 0x9E3779B97F4A7C15L);
+        return (value >>> 40) * 0x1.0p-24f;
+    }
+
+    // splitmix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private final class StepTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final float tpf;
+
+        private StepTask(final int from, final int to, final float tpf) {
+            this.from = from;
+            this.to = to;
+            this.tpf = tpf;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK_SIZE) {
+                step(from, to, tpf);
+                return;
+            }
+
+            final int middle = (from + to) >>> 1;
+            invokeAll(new StepTask(from, middle, tpf), new StepTask(middle, to, tpf));
+        }
+    }
+
+    @Override
+    protected void initialize(final Application app) {
+        camera = app.getCamera();
+    }
+
+    @Override
+    protected void cleanup(final Application app) {}
+
+    @Override
+    protected void onEnable() {}
+
+    @Override
+    protected void onDisable() {}
+}
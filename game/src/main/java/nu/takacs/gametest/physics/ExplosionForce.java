@@ -0,0 +1,199 @@
+package nu.takacs.gametest.physics;
+
+import com.jme3.bullet.PhysicsSpace;
+import com.jme3.bullet.PhysicsTickListener;
+import com.jme3.math.Vector3f;
+import nu.takacs.gametest.entity.DamageQueue;
+import nu.takacs.gametest.entity.EntityRegistry;
+import nu.takacs.gametest.jfr.ExplosionEvent;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Pushes and damages the boxes and NPCs around a blast. Force and damage fall off with
+ * the square of the distance and reach zero at the cutoff radius.
+ * <p>
+ * Blasts are queued and take effect on the next physics tick, so impulses always land
+ * at the start of a fixed step, whatever the frame rate. A tick only sets off blasts
+ * until its time budget, or its cap on blasts, is used up, oldest first; the rest wait for the next tick, so
+ * the blasts of a chain reaction are spread out too. With parallel physics that
+ * tick runs on the physics thread, so the damage it works out goes to a
+ * {@link DamageQueue}, which applies it on the render thread.
+ * <p>
+ * Register it with the physics space as a tick listener.
+ */
+public class ExplosionForce implements PhysicsTickListener {
+
+    private static final float MAX_DAMAGE = 40.0f;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int PUSHED = EntityRegistry.BOX | EntityRegistry.NPC;
+
+    private final EntityRegistry entities;
+    private final DamageQueue damageQueue;
+    private final float cutoff;
+    private final float forceSize;
+
+    private final Vector3f center = new Vector3f();
+    private final Vector3f diff = new Vector3f();
+    // created once, so a blast doesn't allocate a visitor
+    private final IntConsumer pushEntity = this::push;
+
+    // physics thread only, counted per blast for the flight recorder
+    private int bodiesScanned;
+    private int bodiesAffected;
+
+    private volatile long budgetNanos = Long.MAX_VALUE;
+    private volatile int maxBlasts = Integer.MAX_VALUE;
+
+    // guarded by this; filled on the render thread, drained on the physics tick
+    private float[] blasts = new float[INITIAL_CAPACITY * 3];
+    private int blastCount = 0;
+
+    // physics thread only; blasts taken from the queue, set off up to tickingNext
+    private float[] ticking = new float[INITIAL_CAPACITY * 3];
+    private int tickingCount = 0;
+    private int tickingNext = 0;
+    private volatile int deferredBlastCount = 0;
+
+    public ExplosionForce(final EntityRegistry entities,
+                          final DamageQueue damageQueue,
+                          final float cutoff,
+                          final float forceSize) {
+        this.entities = entities;
+        this.damageQueue = damageQueue;
+        this.cutoff = cutoff;
+        this.forceSize = forceSize;
+    }
+
+    /**
+     * Queues a blast at {@code translation} for the next physics tick.
+     */
+    public synchronized void apply(final Vector3f translation) {
+        if (blastCount * 3 == blasts.length) {
+            blasts = Arrays.copyOf(blasts, blasts.length * 2);
+        }
+
+        blasts[blastCount * 3] = translation.x;
+        blasts[blastCount * 3 + 1] = translation.y;
+        blasts[blastCount * 3 + 2] = translation.z;
+        ++blastCount;
+    }
+
+    /**
+     * Returns the number of blasts queued or left over from the last tick.
+     */
+    public synchronized int getPendingBlastCount() {
+        return blastCount + deferredBlastCount;
+    }
+
+    /**
+     * Sets how long a physics tick may spend on blasts. At least one blast goes off
+     * every tick, however small the budget.
+     */
+    public void setBudgetNanos(final long budgetNanos) {
+        this.budgetNanos = budgetNanos;
+    }
+
+    /**
+     * Caps how many blasts a physics tick sets off. Unlike the time budget, a cap
+     * spreads a chain reaction the same way on every machine.
+     */
+    public void setMaxBlasts(final int maxBlasts) {
+        this.maxBlasts = maxBlasts;
+    }
+
+    public float getCutoff() {
+        return cutoff;
+    }
+
+    @Override
+    public void prePhysicsTick(final PhysicsSpace space, final float timeStep) {
+        final long start = System.nanoTime();
+        int done = 0;
+
+        while (tickingNext < tickingCount || takeQueued()) {
+            if (done > 0 && (done >= maxBlasts || System.nanoTime() - start >= budgetNanos)) {
+                break;
+            }
+
+            final int i = tickingNext++;
+            center.set(ticking[i * 3], ticking[i * 3 + 1], ticking[i * 3 + 2]);
+            blast();
+            ++done;
+        }
+
+        deferredBlastCount = tickingCount - tickingNext;
+    }
+
+    /**
+     * Swaps the queue for the blasts that have been set off, so blasts queued meanwhile
+     * wait their turn. Returns false if the queue was empty.
+     */
+    private synchronized boolean takeQueued() {
+        if (blastCount == 0) {
+            return false;
+        }
+
+        final float[] queued = blasts;
+        blasts = ticking.length >= queued.length ? ticking : new float[queued.length];
+        ticking = queued;
+        tickingCount = blastCount;
+        tickingNext = 0;
+        blastCount = 0;
+
+        return true;
+    }
+
+    @Override
+    public void physicsTick(final PhysicsSpace space, final float timeStep) {}
+
+    private void blast() {
+        final var event = new ExplosionEvent();
+        event.begin();
+
+        bodiesScanned = 0;
+        bodiesAffected = 0;
+
+        entities.query(center, cutoff, PUSHED, pushEntity);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.x = center.x;
+            event.y = center.y;
+            event.z = center.z;
+            event.bodiesScanned = bodiesScanned;
+            event.bodiesAffected = bodiesAffected;
+            event.commit();
+        }
+    }
+
+    /**
+     * Pushes and damages one entity around the blast at {@code center}.
+     */
+    private void push(final int id) {
+        final var body = entities.getBody(id);
+        ++bodiesScanned;
+
+        body.getPhysicsLocation(diff).subtractLocal(center);
+
+        final float distance = diff.length();
+
+        if (distance < cutoff) {
+            ++bodiesAffected;
+
+            final float normalizedDistance = (distance / cutoff);
+            final float falloff = 1 - normalizedDistance * normalizedDistance;
+
+            final var impulse = diff.normalizeLocal()
+                    .multLocal(forceSize * falloff);
+
+            body.activate();
+            body.applyImpulse(impulse, Vector3f.ZERO);
+
+            if (entities.has(id, EntityRegistry.HEALTH)) {
+                damageQueue.add(id, (int) (MAX_DAMAGE * falloff));
+            }
+        }
+    }
+}
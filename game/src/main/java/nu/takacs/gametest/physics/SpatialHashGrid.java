@@ -0,0 +1,316 @@
+package nu.takacs.gametest.physics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Uniform grid over world space. Items are bucketed by the cell their last known
+ * position falls into, so a radius query only has to look at the handful of cells
+ * overlapping the query sphere instead of every item.
+ * <p>
+ * Cells are kept in an open-addressing table keyed by the packed cell coordinates and
+ * are reused once they empty out, so moving items around and querying don't allocate.
+ */
+public class SpatialHashGrid<T> {
+
+    private static final int CELL_BITS = 21;
+    private static final long CELL_MASK = (1L << CELL_BITS) - 1;
+    private static final int CELL_OFFSET = 1 << (CELL_BITS - 1);
+
+    private final float cellSize;
+    private final float inverseCellSize;
+
+    private final CellTable<T> cells = new CellTable<>();
+    private Cell<T> freeCells;
+    private final Map<T, Entry<T>> entries = new IdentityHashMap<>();
+    private final ArrayList<Entry<T>> dense = new ArrayList<>();
+
+    public SpatialHashGrid(final float cellSize) {
+        if (cellSize <= 0.0f) {
+            throw new IllegalArgumentException("Cell size must be positive: " + cellSize);
+        }
+
+        this.cellSize = cellSize;
+        this.inverseCellSize = 1.0f / cellSize;
+    }
+
+    /**
+     * Inserts the item, or moves it if it is already in the grid.
+     */
+    public void put(final T item, final float x, final float y, final float z) {
+        var entry = entries.get(item);
+
+        if (entry == null) {
+            entry = new Entry<>(item);
+            entry.denseSlot = dense.size();
+            entries.put(item, entry);
+            dense.add(entry);
+        }
+
+        entry.x = x;
+        entry.y = y;
+        entry.z = z;
+
+        final long key = key(cell(x), cell(y), cell(z));
+
+        if (entry.cell != null && entry.cellKey == key) {
+            return;
+        }
+
+        if (entry.cell != null) {
+            unlink(entry);
+        }
+
+        var cell = cells.get(key);
+        if (cell == null) {
+            cell = freeCells != null ? freeCells : new Cell<>();
+            freeCells = cell.nextFree;
+            cell.nextFree = null;
+            cells.put(key, cell);
+        }
+
+        entry.cellKey = key;
+        entry.cell = cell;
+        entry.slot = cell.entries.size();
+        cell.entries.add(entry);
+    }
+
+    public boolean remove(final T item) {
+        final var entry = entries.remove(item);
+
+        if (entry == null) {
+            return false;
+        }
+
+        unlink(entry);
+
+        final var last = dense.remove(dense.size() - 1);
+        if (last != entry) {
+            dense.set(entry.denseSlot, last);
+            last.denseSlot = entry.denseSlot;
+        }
+
+        return true;
+    }
+
+    public boolean contains(final T item) {
+        return entries.containsKey(item);
+    }
+
+    public int size() {
+        return dense.size();
+    }
+
+    /**
+     * Returns the item at {@code index} in {@code [0, size())}. Indices are not
+     * stable across {@link #remove}, but are across {@link #put} of known items,
+     * so callers can walk all items and move them in the same pass.
+     */
+    public T get(final int index) {
+        return dense.get(index).item;
+    }
+
+    public void clear() {
+        cells.clear();
+        entries.clear();
+        dense.clear();
+    }
+
+    public float getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * Visits every item whose last known position is within {@code radius} of the
+     * given point. The grid must not be modified from inside the visitor.
+     */
+    public void query(final float x, final float y, final float z,
+                      final float radius, final Consumer<? super T> visitor) {
+        final float radiusSquared = radius * radius;
+
+        final int minX = cell(x - radius), maxX = cell(x + radius);
+        final int minY = cell(y - radius), maxY = cell(y + radius);
+        final int minZ = cell(z - radius), maxZ = cell(z + radius);
+
+        for (int cx = minX; cx <= maxX; ++cx) {
+            for (int cy = minY; cy <= maxY; ++cy) {
+                for (int cz = minZ; cz <= maxZ; ++cz) {
+                    final var cell = cells.get(key(cx, cy, cz));
+
+                    if (cell == null) {
+                        continue;
+                    }
+
+                    final var cellEntries = cell.entries;
+                    for (int i = 0, n = cellEntries.size(); i < n; ++i) {
+                        final var entry = cellEntries.get(i);
+
+                        final float dx = entry.x - x;
+                        final float dy = entry.y - y;
+                        final float dz = entry.z - z;
+
+                        if (dx * dx + dy * dy + dz * dz < radiusSquared) {
+                            visitor.accept(entry.item);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void unlink(final Entry<T> entry) {
+        final var cellEntries = entry.cell.entries;
+        final var last = cellEntries.remove(cellEntries.size() - 1);
+
+        if (last != entry) {
+            cellEntries.set(entry.slot, last);
+            last.slot = entry.slot;
+        }
+
+        if (cellEntries.isEmpty()) {
+            final var cell = cells.remove(entry.cellKey);
+            cell.nextFree = freeCells;
+            freeCells = cell;
+        }
+
+        entry.cell = null;
+    }
+
+    private int cell(final float coordinate) {
+        return (int) Math.floor(coordinate * inverseCellSize);
+    }
+
+    private static long key(final int x, final int y, final int z) {
+        return ((x + CELL_OFFSET) & CELL_MASK) << (2 * CELL_BITS)
+                | ((y + CELL_OFFSET) & CELL_MASK) << CELL_BITS
+                | ((z + CELL_OFFSET) & CELL_MASK);
+    }
+
+    private static final class Cell<T> {
+        private final ArrayList<Entry<T>> entries = new ArrayList<>(4);
+        private Cell<T> nextFree;
+    }
+
+    /**
+     * Cells by key, with linear probing. Removal shifts the following entries back
+     * instead of leaving tombstones.
+     */
+    private static final class CellTable<T> {
+        private static final int INITIAL_CAPACITY = 64;
+
+        private long[] keys = new long[INITIAL_CAPACITY];
+        private Cell<T>[] values = newArray(INITIAL_CAPACITY);
+        private int size = 0;
+
+        Cell<T> get(final long key) {
+            final int mask = keys.length - 1;
+
+            for (int i = index(key, mask); values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+            }
+
+            return null;
+        }
+
+        void put(final long key, final Cell<T> cell) {
+            if (2 * (size + 1) > keys.length) {
+                resize(keys.length * 2);
+            }
+
+            final int mask = keys.length - 1;
+            int i = index(key, mask);
+
+            while (values[i] != null) {
+                if (keys[i] == key) {
+                    values[i] = cell;
+                    return;
+                }
+
+                i = (i + 1) & mask;
+            }
+
+            keys[i] = key;
+            values[i] = cell;
+            ++size;
+        }
+
+        Cell<T> remove(final long key) {
+            final int mask = keys.length - 1;
+            int i = index(key, mask);
+
+            while (values[i] != null && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+
+            final var removed = values[i];
+            if (removed == null) {
+                return null;
+            }
+
+            // move back every following entry that would no longer be found past the gap
+            int gap = i;
+            for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+                final int home = index(keys[j], mask);
+
+                if (((j - home) & mask) >= ((j - gap) & mask)) {
+                    keys[gap] = keys[j];
+                    values[gap] = values[j];
+                    gap = j;
+                }
+            }
+
+            values[gap] = null;
+            --size;
+
+            return removed;
+        }
+
+        void clear() {
+            Arrays.fill(values, null);
+            size = 0;
+        }
+
+        private void resize(final int capacity) {
+            final long[] oldKeys = keys;
+            final Cell<T>[] oldValues = values;
+
+            keys = new long[capacity];
+            values = newArray(capacity);
+            size = 0;
+
+            for (int i = 0; i < oldKeys.length; ++i) {
+                if (oldValues[i] != null) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static int index(final long key, final int mask) {
+            final long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> Cell<T>[] newArray(final int capacity) {
+            return (Cell<T>[]) new Cell<?>[capacity];
+        }
+    }
+
+    private static final class Entry<T> {
+        private final T item;
+        private float x, y, z;
+        private long cellKey;
+        private Cell<T> cell;
+        private int slot;
+        private int denseSlot;
+
+        private Entry(final T item) {
+            this.item = item;
+        }
+    }
+}
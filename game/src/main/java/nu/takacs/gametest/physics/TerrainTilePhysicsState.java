@@ -0,0 +1,130 @@
+package nu.takacs.gametest.physics;
+
+import com.jme3.app.Application;
+import com.jme3.app.state.BaseAppState;
+import com.jme3.bullet.PhysicsSpace;
+import com.jme3.bullet.collision.shapes.HeightfieldCollisionShape;
+import com.jme3.bullet.objects.PhysicsRigidBody;
+import com.jme3.math.Vector3f;
+import com.jme3.terrain.geomipmap.TerrainGridListener;
+import com.jme3.terrain.geomipmap.TerrainQuad;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Gives the tiles of a paged {@link com.jme3.terrain.geomipmap.TerrainGrid} heightfield
+ * collision while they are attached.
+ * <p>
+ * The grid already generates its tiles in the background. When one is attached, its
+ * collision shape is built on a worker thread and the static body is added to the
+ * physics space back on the render thread. Detaching a tile removes its body, or drops
+ * the shape if it is still being built.
+ */
+public class TerrainTilePhysicsState extends BaseAppState implements TerrainGridListener {
+    private static final Logger LOG = LoggerFactory.getLogger(TerrainTilePhysicsState.class);
+
+    private final PhysicsSpace physicsSpace;
+    private final Map<TerrainQuad, Tile> tiles = new HashMap<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        final var thread = new Thread(runnable, "terrain-collision");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public TerrainTilePhysicsState(final PhysicsSpace physicsSpace) {
+        this.physicsSpace = physicsSpace;
+    }
+
+    @Override
+    public void tileAttached(final Vector3f cell, final TerrainQuad quad) {
+        if (tiles.containsKey(quad)) {
+            return;
+        }
+
+        final var tile = new Tile(quad.getWorldTranslation().clone());
+        final float[] heights = quad.getHeightMap();
+        final var scale = quad.getWorldScale().clone();
+
+        tiles.put(quad, tile);
+
+        tile.shapeBuild = executor.submit(() -> {
+            final var shape = new HeightfieldCollisionShape(heights, scale);
+            getApplication().enqueue(() -> addBody(quad, tile, shape));
+        });
+    }
+
+    @Override
+    public void tileDetached(final Vector3f cell, final TerrainQuad quad) {
+        final var tile = tiles.remove(quad);
+
+        if (tile == null) {
+            return;
+        }
+
+        tile.shapeBuild.cancel(false);
+
+        if (tile.body != null) {
+            physicsSpace.remove(tile.body);
+        }
+    }
+
+    @Override
+    public void gridMoved(final Vector3f newCenter) {
+        LOG.debug("Terrain grid moved to {}", newCenter);
+    }
+
+    public int getTileCount() {
+        return tiles.size();
+    }
+
+    private void addBody(final TerrainQuad quad, final Tile tile, final HeightfieldCollisionShape shape) {
+        if (tiles.get(quad) != tile) {
+            // detached while the shape was being built
+            return;
+        }
+
+        final var body = new PhysicsRigidBody(shape, 0.0f);
+        body.setPhysicsLocation(tile.location);
+        physicsSpace.add(body);
+
+        tile.body = body;
+    }
+
+    @Override
+    protected void initialize(final Application app) {}
+
+    @Override
+    protected void cleanup(final Application app) {
+        executor.shutdownNow();
+
+        for (final var tile : tiles.values()) {
+            if (tile.body != null) {
+                physicsSpace.remove(tile.body);
+            }
+        }
+
+        tiles.clear();
+    }
+
+    @Override
+    protected void onEnable() {}
+
+    @Override
+    protected void onDisable() {}
+
+    private static final class Tile {
+        private final Vector3f location;
+        private Future<?> shapeBuild;
+        private PhysicsRigidBody body;
+
+        private Tile(final Vector3f location) {
+            this.location = location;
+        }
+    }
+}
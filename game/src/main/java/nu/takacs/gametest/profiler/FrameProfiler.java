@@ -0,0 +1,426 @@
+package nu.takacs.gametest.profiler;
+
+import com.jme3.bullet.PhysicsSpace;
+import com.jme3.bullet.PhysicsTickListener;
+import com.jme3.profile.AppProfiler;
+import com.jme3.profile.AppStep;
+import com.jme3.profile.SpStep;
+import com.jme3.profile.VpStep;
+import com.jme3.renderer.ViewPort;
+import com.jme3.renderer.queue.RenderQueue;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Times every frame and where it goes, over the last {@link #HISTORY} frames.
+ * <p>
+ * Installed as the application's {@link AppProfiler}, it splits the frame into
+ * sections: queued tasks, input, every app state's update, the scene update that runs
+ * the controls, and rendering, which includes waiting for a parallel physics step. The
+ * physics step itself runs on its own thread and is timed separately as a tick
+ * listener. For every frame it also keeps the bytes the render thread allocated.
+ * <p>
+ * Everything but the tick listener is called on the render thread.
+ */
+public class FrameProfiler implements AppProfiler, PhysicsTickListener {
+
+    public static final int HISTORY = 600;
+
+    public static final String TASKS = "queued tasks";
+    public static final String INPUT = "input";
+    public static final String SCENE_UPDATE = "scene update";
+    public static final String RENDER = "render";
+    public static final String PHYSICS_STEP = "physics step";
+
+    private static final int NONE = -1;
+
+    private final Map<String, Integer> sectionIndex = new HashMap<>();
+    private String[] sectionNames = new String[16];
+    private int sectionCount = 0;
+
+    // per section, then per frame slot
+    private long[][] sectionNanos = new long[16][];
+    private final long[] frameNanos = new long[HISTORY];
+    private final long[] allocatedBytes = new long[HISTORY];
+    private final long[] sorted = new long[HISTORY];
+
+    private final com.sun.management.ThreadMXBean threads;
+    private long renderThreadId = -1;
+    private long lastAllocated = -1;
+
+    private long frame = -1;
+    private long frameStart;
+    private boolean updatingStates = false;
+    private int section = NONE;
+    private long sectionStart;
+
+    private long tickStart;
+    private long physicsNanos = 0;
+
+    public FrameProfiler() {
+        final var bean = ManagementFactory.getThreadMXBean();
+
+        threads = bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()
+                ? (com.sun.management.ThreadMXBean) bean
+                : null;
+
+        for (final var name : new String[]{TASKS, INPUT, SCENE_UPDATE, RENDER, PHYSICS_STEP}) {
+            indexOf(name);
+        }
+    }
+
+    /**
+     * Forgets everything measured so far; the next frame starts a fresh history.
+     */
+    public void reset() {
+        frame = -1;
+        section = NONE;
+        lastAllocated = -1;
+
+        for (int i = 0; i < sectionCount; ++i) {
+            Arrays.fill(sectionNanos[i], 0);
+        }
+
+        Arrays.fill(frameNanos, 0);
+        Arrays.fill(allocatedBytes, 0);
+
+        synchronized (this) {
+            physicsNanos = 0;
+        }
+    }
+
+    @Override
+    public void appStep(final AppStep step) {
+        final long now = System.nanoTime();
+
+        switch (step) {
+            case BeginFrame:
+                endFrame(now);
+                break;
+
+            case QueuedTasks:
+                beginSection(indexOf(TASKS), now);
+                break;
+
+            case ProcessInput:
+                beginSection(indexOf(INPUT), now);
+                break;
+
+            case StateManagerUpdate:
+                // every state's update is announced as a sub step
+                updatingStates = true;
+                beginSection(NONE, now);
+                break;
+
+            case SpatialUpdate:
+                updatingStates = false;
+                beginSection(indexOf(SCENE_UPDATE), now);
+                break;
+
+            case StateManagerRender:
+                beginSection(indexOf(RENDER), now);
+                break;
+
+            case EndFrame:
+                beginSection(NONE, now);
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Starts timing a section of the state update, named by the first argument, until
+     * the next step or sub step. Besides the app states, which are announced by the
+     * state manager, the application may announce its own update this way.
+     */
+    @Override
+    public void appSubStep(final String... additionalInfo) {
+        if (updatingStates && additionalInfo.length > 0) {
+            // anonymous states have no simple name
+            beginSection(indexOf(additionalInfo[0].isEmpty() ? "(anonymous)" : additionalInfo[0]),
+                    System.nanoTime());
+        }
+    }
+
+    @Override
+    public void vpStep(final VpStep step, final ViewPort vp, final RenderQueue.Bucket bucket) {}
+
+    @Override
+    public void spStep(final SpStep step, final String... additionalInfo) {}
+
+    @Override
+    public void prePhysicsTick(final PhysicsSpace space, final float timeStep) {
+        tickStart = System.nanoTime();
+    }
+
+    @Override
+    public void physicsTick(final PhysicsSpace space, final float timeStep) {
+        final long elapsed = System.nanoTime() - tickStart;
+
+        synchronized (this) {
+            physicsNanos += elapsed;
+        }
+    }
+
+    /**
+     * Number of complete frames in the history.
+     */
+    public int getFrameCount() {
+        // the newest slot belongs to the frame being measured
+        return (int) Math.min(Math.max(frame, 0), HISTORY - 1);
+    }
+
+    public int getSectionCount() {
+        return sectionCount;
+    }
+
+    public String getSectionName(final int section) {
+        return sectionNames[section];
+    }
+
+    /**
+     * Average time the section took per frame over the history, in milliseconds.
+     */
+    public double getSectionAverageMillis(final int section) {
+        return average(sectionNanos[section]) / 1e6;
+    }
+
+    /**
+     * Largest time the section took in a frame over the history, in milliseconds.
+     */
+    public double getSectionMaxMillis(final int section) {
+        final int frames = getFrameCount();
+        final long[] nanos = sectionNanos[section];
+        long max = 0;
+
+        for (int i = 0; i < frames; ++i) {
+            max = Math.max(max, nanos[slot(i)]);
+        }
+
+        return max / 1e6;
+    }
+
+    /**
+     * Frame time at each of the given fractions of the history, in milliseconds.
+     */
+    public void getFramePercentiles(final double[] fractions, final double[] millis) {
+        final int frames = getFrameCount();
+
+        if (frames == 0) {
+            Arrays.fill(millis, 0.0);
+            return;
+        }
+
+        for (int i = 0; i < frames; ++i) {
+            sorted[i] = frameNanos[slot(i)];
+        }
+        Arrays.sort(sorted, 0, frames);
+
+        for (int i = 0; i < fractions.length; ++i) {
+            final int index = (int) Math.ceil(fractions[i] * frames) - 1;
+            millis[i] = sorted[Math.max(0, Math.min(frames - 1, index))] / 1e6;
+        }
+    }
+
+    /**
+     * Counts the frames of the history into buckets: bucket {@code i} holds the frames
+     * longer than the previous bound and at most {@code upperBoundsMillis[i]}, and the
+     * last bucket, one past the bounds, the frames longer than all of them.
+     */
+    public void getFrameHistogram(final double[] upperBoundsMillis, final int[] counts) {
+        Arrays.fill(counts, 0);
+
+        for (int i = 0, frames = getFrameCount(); i < frames; ++i) {
+            final double millis = frameNanos[slot(i)] / 1e6;
+            int bucket = 0;
+
+            while (bucket < upperBoundsMillis.length && millis > upperBoundsMillis[bucket]) {
+                ++bucket;
+            }
+
+            ++counts[bucket];
+        }
+    }
+
+    /**
+     * Bytes allocated per second by the render thread over the history, or -1 when
+     * the JVM can't tell.
+     */
+    public double getAllocationRate() {
+        if (threads == null) {
+            return -1;
+        }
+
+        final double seconds = average(frameNanos) * getFrameCount() / 1e9;
+        return seconds > 0 ? average(allocatedBytes) * getFrameCount() / seconds : 0;
+    }
+
+    /**
+     * Copies the history, oldest frame first, for writing elsewhere.
+     */
+    public Snapshot snapshot() {
+        final int frames = getFrameCount();
+        final var names = Arrays.copyOf(sectionNames, sectionCount);
+        final var sections = new long[sectionCount][frames];
+        final var frameTimes = new long[frames];
+        final var allocated = new long[frames];
+
+        for (int i = 0; i < frames; ++i) {
+            final int slot = slot(frames - 1 - i);
+
+            frameTimes[i] = frameNanos[slot];
+            allocated[i] = allocatedBytes[slot];
+
+            for (int s = 0; s < sectionCount; ++s) {
+                sections[s][i] = sectionNanos[s][slot];
+            }
+        }
+
+        return new Snapshot(names, sections, frameTimes, allocated);
+    }
+
+    /**
+     * Slot of the {@code age}-th complete frame, counting back from the newest.
+     */
+    private int slot(final int age) {
+        return (int) ((frame - 1 - age) % HISTORY);
+    }
+
+    private void endFrame(final long now) {
+        beginSection(NONE, now);
+
+        final long allocated = threads != null ? currentAllocatedBytes() : 0;
+
+        if (frame >= 0) {
+            final int slot = (int) (frame % HISTORY);
+            frameNanos[slot] = now - frameStart;
+            allocatedBytes[slot] = lastAllocated >= 0 ? allocated - lastAllocated : 0;
+
+            synchronized (this) {
+                // the step started last frame was joined before it ended
+                sectionNanos[indexOf(PHYSICS_STEP)][slot] = physicsNanos;
+                physicsNanos = 0;
+            }
+        }
+
+        ++frame;
+        frameStart = now;
+        lastAllocated = allocated;
+
+        final int slot = (int) (frame % HISTORY);
+        for (int i = 0; i < sectionCount; ++i) {
+            sectionNanos[i][slot] = 0;
+        }
+    }
+
+    private long currentAllocatedBytes() {
+        if (renderThreadId < 0) {
+            renderThreadId = Thread.currentThread().getId();
+        }
+
+        return threads.getThreadAllocatedBytes(renderThreadId);
+    }
+
+    private void beginSection(final int next, final long now) {
+        if (section != NONE && frame >= 0) {
+            sectionNanos[section][(int) (frame % HISTORY)] += now - sectionStart;
+        }
+
+        section = next;
+        sectionStart = now;
+    }
+
+    private int indexOf(final String name) {
+        final Integer index = sectionIndex.get(name);
+
+        if (index != null) {
+            return index;
+        }
+
+        if (sectionCount == sectionNames.length) {
+            sectionNames = Arrays.copyOf(sectionNames, sectionCount * 2);
+            sectionNanos = Arrays.copyOf(sectionNanos, sectionCount * 2);
+        }
+
+        sectionNames[sectionCount] = name;
+        sectionNanos[sectionCount] = new long[HISTORY];
+        sectionIndex.put(name, sectionCount);
+
+        return sectionCount++;
+    }
+
+    private double average(final long[] values) {
+        final int frames = getFrameCount();
+
+        if (frames == 0) {
+            return 0;
+        }
+
+        long sum = 0;
+        for (int i = 0; i < frames; ++i) {
+            sum += values[slot(i)];
+        }
+
+        return (double) sum / frames;
+    }
+
+    /**
+     * A copy of the history that can be written out on another thread.
+     */
+    public static final class Snapshot {
+        private final String[] sectionNames;
+        private final long[][] sectionNanos;
+        private final long[] frameNanos;
+        private final long[] allocatedBytes;
+
+        private Snapshot(final String[] sectionNames, final long[][] sectionNanos,
+                         final long[] frameNanos, final long[] allocatedBytes) {
+            this.sectionNames = sectionNames;
+            this.sectionNanos = sectionNanos;
+            this.frameNanos = frameNanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        public int getFrameCount() {
+            return frameNanos.length;
+        }
+
+        /**
+         * Writes one row per frame: frame time, allocated bytes, then every section's
+         * time, in milliseconds.
+         */
+        public void writeCsv(final OutputStream out) throws IOException {
+            final var writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+
+            writer.write("frame,frame_ms,allocated_bytes");
+            for (final var name : sectionNames) {
+                writer.write(',');
+                writer.write(name.replace(',', ' '));
+            }
+            writer.newLine();
+
+            for (int i = 0; i < frameNanos.length; ++i) {
+                writer.write(String.format("%d,%.3f,%d", i, frameNanos[i] / 1e6, allocatedBytes[i]));
+
+                for (final long[] section : sectionNanos) {
+                    writer.write(String.format(",%.3f", section[i] / 1e6));
+                }
+
+                writer.newLine();
+            }
+
+            writer.flush();
+        }
+    }
+}
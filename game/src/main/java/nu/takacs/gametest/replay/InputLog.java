@@ -0,0 +1,146 @@
+package nu.takacs.gametest.replay;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * A recorded play session, as written by {@link InputRecorder}.
+ * <p>
+ * The file starts with a header of magic, version and the table of action names. It
+ * is followed by one record per frame: the frame's time step, the camera rotation
+ * and location, and the actions pressed or released in that frame, each as a single
+ * byte holding the action's index and the pressed bit.
+ */
+public final class InputLog {
+
+    static final int MAGIC = 0x47544952;
+    static final int VERSION = 1;
+    static final int PRESSED_BIT = 0x80;
+    static final int MAX_ACTIONS = 0x7F;
+    static final int POSE_FLOATS = 7;
+
+    private final String[] actions;
+    private final int frameCount;
+    private final float[] timePerFrame;
+    private final float[] pose;
+    private final int[] eventStart;
+    private final byte[] events;
+
+    private InputLog(final String[] actions, final int frameCount, final float[] timePerFrame,
+                     final float[] pose, final int[] eventStart, final byte[] events) {
+        this.actions = actions;
+        this.frameCount = frameCount;
+        this.timePerFrame = timePerFrame;
+        this.pose = pose;
+        this.eventStart = eventStart;
+        this.events = events;
+    }
+
+    public static InputLog read(final Path file) throws IOException {
+        try (final var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not an input log: " + file);
+            }
+
+            final int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported input log version " + version + " in " + file);
+            }
+
+            final var actions = new String[in.readUnsignedByte()];
+            for (int i = 0; i < actions.length; ++i) {
+                actions[i] = in.readUTF();
+            }
+
+            int frames = 0;
+            int eventCount = 0;
+            float[] timePerFrame = new float[1024];
+            float[] pose = new float[1024 * POSE_FLOATS];
+            int[] eventStart = new int[1025];
+            byte[] events = new byte[256];
+
+            while (true) {
+                final float tpf;
+                try {
+                    tpf = in.readFloat();
+                } catch (final EOFException e) {
+                    break;
+                }
+
+                if (frames == timePerFrame.length) {
+                    timePerFrame = Arrays.copyOf(timePerFrame, frames * 2);
+                    pose = Arrays.copyOf(pose, frames * 2 * POSE_FLOATS);
+                    eventStart = Arrays.copyOf(eventStart, frames * 2 + 1);
+                }
+
+                timePerFrame[frames] = tpf;
+                for (int i = 0; i < POSE_FLOATS; ++i) {
+                    pose[frames * POSE_FLOATS + i] = in.readFloat();
+                }
+
+                final int frameEvents = in.readUnsignedShort();
+                if (eventCount + frameEvents > events.length) {
+                    events = Arrays.copyOf(events, Math.max(events.length * 2, eventCount + frameEvents));
+                }
+
+                in.readFully(events, eventCount, frameEvents);
+                for (int i = eventCount; i < eventCount + frameEvents; ++i) {
+                    if ((events[i] & MAX_ACTIONS) >= actions.length) {
+                        throw new IOException("Unknown action in frame " + frames + " of " + file);
+                    }
+                }
+
+                eventStart[frames] = eventCount;
+                eventCount += frameEvents;
+                ++frames;
+            }
+
+            eventStart[frames] = eventCount;
+
+            return new InputLog(actions, frames, timePerFrame, pose, eventStart, events);
+        }
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    public float getTimePerFrame(final int frame) {
+        return timePerFrame[frame];
+    }
+
+    /**
+     * Camera rotation x, y, z, w, then location x, y, z at the given frame.
+     */
+    public float getPose(final int frame, final int component) {
+        return pose[frame * POSE_FLOATS + component];
+    }
+
+    public int getEventCount(final int frame) {
+        return eventStart[frame + 1] - eventStart[frame];
+    }
+
+    public String getEventAction(final int frame, final int event) {
+        return actions[events[eventStart[frame] + event] & MAX_ACTIONS];
+    }
+
+    public boolean isEventPressed(final int frame, final int event) {
+        return (events[eventStart[frame] + event] & PRESSED_BIT) != 0;
+    }
+
+    /**
+     * Total game time covered by the log, in seconds.
+     */
+    public double getDuration() {
+        double duration = 0;
+        for (int i = 0; i < frameCount; ++i) {
+            duration += timePerFrame[i];
+        }
+        return duration;
+    }
+}
@@ -0,0 +1,162 @@
+package nu.takacs.gametest.replay;
+
+import com.jme3.app.Application;
+import com.jme3.app.state.BaseAppState;
+import com.jme3.renderer.Camera;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Records the player's actions and the camera, frame by frame, to an {@link InputLog}.
+ * <p>
+ * Actions are buffered as they come in and written together with the frame's time
+ * step and camera pose when the state updates, so attach it before the states that
+ * play the game. Recording begins on {@link #start}.
+ */
+public class InputRecorder extends BaseAppState {
+    private static final Logger LOG = LoggerFactory.getLogger(InputRecorder.class);
+
+    private final Path file;
+    private final String[] actions;
+
+    private DataOutputStream out;
+    private Camera camera;
+    private byte[] events = new byte[16];
+    private int eventCount = 0;
+    private int frames = 0;
+
+    public InputRecorder(final Path file, final String[] actions) {
+        if (actions.length > InputLog.MAX_ACTIONS) {
+            throw new IllegalArgumentException("Too many actions to record: " + actions.length);
+        }
+
+        this.file = file;
+        this.actions = actions.clone();
+
+        setEnabled(false);
+    }
+
+    /**
+     * Starts recording from the next frame.
+     */
+    public void start() {
+        setEnabled(true);
+    }
+
+    public boolean isRecording() {
+        return isEnabled() && out != null;
+    }
+
+    /**
+     * Records an action; call it for every action the game handles.
+     */
+    public void onAction(final String binding, final boolean isPressed) {
+        if (!isRecording()) {
+            return;
+        }
+
+        final int action = indexOf(binding);
+        if (action < 0) {
+            return;
+        }
+
+        if (eventCount == events.length) {
+            events = Arrays.copyOf(events, events.length * 2);
+        }
+
+        events[eventCount++] = (byte) (isPressed ? action | InputLog.PRESSED_BIT : action);
+    }
+
+    @Override
+    public void update(final float tpf) {
+        if (out == null) {
+            return;
+        }
+
+        final var rotation = camera.getRotation();
+        final var location = camera.getLocation();
+
+        try {
+            out.writeFloat(tpf);
+            out.writeFloat(rotation.getX());
+            out.writeFloat(rotation.getY());
+            out.writeFloat(rotation.getZ());
+            out.writeFloat(rotation.getW());
+            out.writeFloat(location.x);
+            out.writeFloat(location.y);
+            out.writeFloat(location.z);
+            out.writeShort(eventCount);
+            out.write(events, 0, eventCount);
+        } catch (final IOException e) {
+            LOG.error("Could not write to input log {}, recording stopped", file, e);
+            close();
+            return;
+        }
+
+        eventCount = 0;
+        ++frames;
+    }
+
+    private int indexOf(final String binding) {
+        for (int i = 0; i < actions.length; ++i) {
+            if (actions[i].equals(binding)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private void close() {
+        try {
+            out.close();
+        } catch (final IOException e) {
+            LOG.warn("Could not close input log {}", file, e);
+        }
+
+        out = null;
+    }
+
+    @Override
+    protected void initialize(final Application app) {
+        camera = app.getCamera();
+    }
+
+    @Override
+    protected void cleanup(final Application app) {}
+
+    @Override
+    protected void onEnable() {
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024));
+            out.writeInt(InputLog.MAGIC);
+            out.writeInt(InputLog.VERSION);
+            out.writeByte(actions.length);
+
+            for (final var action : actions) {
+                out.writeUTF(action);
+            }
+        } catch (final IOException e) {
+            LOG.error("Could not create input log {}", file, e);
+            out = null;
+            return;
+        }
+
+        LOG.info("Recording input to {}", file);
+    }
+
+    @Override
+    protected void onDisable() {
+        if (out != null) {
+            close();
+            LOG.info("Recorded {} frames to {}", frames, file);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package nu.takacs.gametest.replay;
+
+import com.jme3.app.Application;
+import com.jme3.app.state.BaseAppState;
+import com.jme3.input.controls.ActionListener;
+import com.jme3.math.Quaternion;
+import com.jme3.renderer.Camera;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Plays an {@link InputLog} back into the game, driven by a {@link ReplayTimer}, and
+ * stops the application when the log runs out.
+ * <p>
+ * Every frame it puts the camera where it was recorded and hands the recorded actions
+ * to the game's action listener, just as the input manager did. The wall time of every
+ * frame is measured; at the end the percentiles are logged and all frame times are
+ * written next to the log as CSV, for comparing builds. How far the camera, which
+ * follows the player, ends up from where it was recorded shows whether the replay
+ * stayed faithful.
+ * <p>
+ * Attach it before the states that play the game. Playback begins on {@link #start}.
+ */
+public class InputReplayer extends BaseAppState {
+    private static final Logger LOG = LoggerFactory.getLogger(InputReplayer.class);
+
+    private final InputLog log;
+    private final ReplayTimer timer;
+    private final ActionListener target;
+    private final Path report;
+
+    private final Quaternion rotation = new Quaternion();
+    private final long[] frameNanos;
+
+    private Camera camera;
+    private long lastFrameStart = -1;
+    private float maxDrift = 0.0f;
+    private int maxDriftFrame = -1;
+
+    public InputReplayer(final InputLog log,
+                         final ReplayTimer timer,
+                         final ActionListener target,
+                         final Path report) {
+        this.log = log;
+        this.timer = timer;
+        this.target = target;
+        this.report = report;
+        this.frameNanos = new long[log.getFrameCount()];
+
+        setEnabled(false);
+    }
+
+    /**
+     * Starts playing the log from the next frame.
+     */
+    public void start() {
+        timer.start();
+        setEnabled(true);
+    }
+
+    @Override
+    public void update(final float tpf) {
+        final int frame = timer.getFrame();
+        if (frame < 0) {
+            return;
+        }
+
+        final long now = System.nanoTime();
+        if (lastFrameStart >= 0 && frame > 0) {
+            frameNanos[frame - 1] = now - lastFrameStart;
+        }
+        lastFrameStart = now;
+
+        if (timer.isFinished()) {
+            finish();
+            return;
+        }
+
+        rotation.set(log.getPose(frame, 0), log.getPose(frame, 1),
+                log.getPose(frame, 2), log.getPose(frame, 3));
+        camera.setRotation(rotation);
+
+        final var location = camera.getLocation();
+        final float dx = location.x - log.getPose(frame, 4);
+        final float dy = location.y - log.getPose(frame, 5);
+        final float dz = location.z - log.getPose(frame, 6);
+        final float drift = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+
+        if (drift > maxDrift) {
+            maxDrift = drift;
+            maxDriftFrame = frame;
+        }
+
+        for (int i = 0, n = log.getEventCount(frame); i < n; ++i) {
+            target.onAction(log.getEventAction(frame, i), log.isEventPressed(frame, i), tpf);
+        }
+    }
+
+    private void finish() {
+        final int frames = frameNanos.length;
+        final long[] sorted = frameNanos.clone();
+        Arrays.sort(sorted);
+
+        if (frames > 0) {
+            LOG.info(String.format("Replayed %d frames (%.1f s of game time): "
+                            + "p50 %.2f ms, p95 %.2f ms, p99 %.2f ms, max %.2f ms; "
+                            + "camera drift at most %.3f (frame %d)",
+                    frames, log.getDuration(),
+                    percentile(sorted, 0.50), percentile(sorted, 0.95),
+                    percentile(sorted, 0.99), sorted[frames - 1] / 1e6,
+                    maxDrift, maxDriftFrame));
+        }
+
+        try (BufferedWriter out = Files.newBufferedWriter(report)) {
+            out.write("frame,tpf,frame_ms");
+            out.newLine();
+
+            for (int i = 0; i < frames; ++i) {
+                out.write(String.format("%d,%.6f,%.3f", i, log.getTimePerFrame(i), frameNanos[i] / 1e6));
+                out.newLine();
+            }
+
+            LOG.info("Frame times written to {}", report);
+        } catch (final IOException e) {
+            LOG.error("Could not write frame times to {}", report, e);
+        }
+
+        setEnabled(false);
+        getApplication().stop();
+    }
+
+    private static double percentile(final long[] sorted, final double fraction) {
+        final int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    @Override
+    protected void initialize(final Application app) {
+        camera = app.getCamera();
+    }
+
+    @Override
+    protected void cleanup(final Application app) {}
+
+    @Override
+    protected void onEnable() {
+        LOG.info("Replaying {} frames", log.getFrameCount());
+    }
+
+    @Override
+    protected void onDisable() {}
+}
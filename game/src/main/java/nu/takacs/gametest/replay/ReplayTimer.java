@@ -0,0 +1,83 @@
+package nu.takacs.gametest.replay;
+
+import com.jme3.system.Timer;
+
+/**
+ * Steps the game by the frame times of an {@link InputLog} instead of the wall clock,
+ * so a replayed session sees exactly the time steps it was recorded with however fast
+ * it runs.
+ * <p>
+ * Until {@link #start} the game steps at a fixed rate, which is enough for loading.
+ */
+public class ReplayTimer extends Timer {
+    private static final long RESOLUTION = 1_000_000_000L;
+    private static final float IDLE_TIME_PER_FRAME = 1.0f / 60.0f;
+
+    private final InputLog log;
+
+    private boolean replaying = false;
+    private int frame = -1;
+    private float timePerFrame = IDLE_TIME_PER_FRAME;
+    private double time = 0.0;
+
+    public ReplayTimer(final InputLog log) {
+        this.log = log;
+    }
+
+    /**
+     * Makes the next update step by the first frame of the log.
+     */
+    public void start() {
+        replaying = true;
+        frame = -1;
+    }
+
+    /**
+     * The log frame the game is currently stepping, or -1 before the replay starts.
+     */
+    public int getFrame() {
+        return replaying ? frame : -1;
+    }
+
+    public boolean isFinished() {
+        return replaying && frame >= log.getFrameCount();
+    }
+
+    @Override
+    public long getTime() {
+        return (long) (time * RESOLUTION);
+    }
+
+    @Override
+    public long getResolution() {
+        return RESOLUTION;
+    }
+
+    @Override
+    public float getFrameRate() {
+        return 1.0f / timePerFrame;
+    }
+
+    @Override
+    public float getTimePerFrame() {
+        return timePerFrame;
+    }
+
+    @Override
+    public void update() {
+        if (replaying) {
+            ++frame;
+
+            if (frame < log.getFrameCount()) {
+                timePerFrame = log.getTimePerFrame(frame);
+            }
+        }
+
+        time += timePerFrame;
+    }
+
+    @Override
+    public void reset() {
+        time = 0.0;
+    }
+}
@@ -0,0 +1,189 @@
+package nu.takacs.gametest.save;
+
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import nu.takacs.gametest.ai.AiState;
+
+import java.util.Arrays;
+
+/**
+ * Gameplay state of a set of entities, one packed array per field. This is what
+ * {@link GameStateFile} writes and reads; fields that don't apply to an entity's
+ * type are left at zero.
+ */
+public class EntityStates {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Vector3f playerLocation = new Vector3f();
+
+    private int count = 0;
+    byte[] type;
+    float[] location;
+    float[] rotation;
+    float[] linearVelocity;
+    float[] angularVelocity;
+    int[] health;
+    float[] fuse;
+    byte[] aiState;
+    float[] aiTimeLeft;
+    float[] aiDirection;
+
+    public EntityStates() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public EntityStates(final int capacity) {
+        allocate(Math.max(1, capacity));
+    }
+
+    /**
+     * Appends an entity of the given type with every other field zeroed and returns its index.
+     */
+    public int add(final EntityType entityType) {
+        if (count == type.length) {
+            grow();
+        }
+
+        final int index = count++;
+        type[index] = (byte) entityType.ordinal();
+        rotation[index * 4 + 3] = 1.0f;
+
+        return index;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public Vector3f getPlayerLocation() {
+        return playerLocation;
+    }
+
+    public void setPlayerLocation(final Vector3f location) {
+        playerLocation.set(location);
+    }
+
+    public EntityType getType(final int index) {
+        return EntityType.fromOrdinal(type[index]);
+    }
+
+    public void setTransform(final int index, final Vector3f location, final Quaternion rotation) {
+        this.location[index * 3] = location.x;
+        this.location[index * 3 + 1] = location.y;
+        this.location[index * 3 + 2] = location.z;
+
+        this.rotation[index * 4] = rotation.getX();
+        this.rotation[index * 4 + 1] = rotation.getY();
+        this.rotation[index * 4 + 2] = rotation.getZ();
+        this.rotation[index * 4 + 3] = rotation.getW();
+    }
+
+    public Vector3f getLocation(final int index, final Vector3f store) {
+        return store.set(location[index * 3], location[index * 3 + 1], location[index * 3 + 2]);
+    }
+
+    public Quaternion getRotation(final int index, final Quaternion store) {
+        return store.set(rotation[index * 4], rotation[index * 4 + 1],
+                rotation[index * 4 + 2], rotation[index * 4 + 3]);
+    }
+
+    public void setVelocity(final int index, final Vector3f linear, final Vector3f angular) {
+        linearVelocity[index * 3] = linear.x;
+        linearVelocity[index * 3 + 1] = linear.y;
+        linearVelocity[index * 3 + 2] = linear.z;
+
+        angularVelocity[index * 3] = angular.x;
+        angularVelocity[index * 3 + 1] = angular.y;
+        angularVelocity[index * 3 + 2] = angular.z;
+    }
+
+    public Vector3f getLinearVelocity(final int index, final Vector3f store) {
+        return store.set(linearVelocity[index * 3], linearVelocity[index * 3 + 1],
+                linearVelocity[index * 3 + 2]);
+    }
+
+    public Vector3f getAngularVelocity(final int index, final Vector3f store) {
+        return store.set(angularVelocity[index * 3], angularVelocity[index * 3 + 1],
+                angularVelocity[index * 3 + 2]);
+    }
+
+    public int getHealth(final int index) {
+        return health[index];
+    }
+
+    public void setHealth(final int index, final int health) {
+        this.health[index] = health;
+    }
+
+    /**
+     * Seconds of game time left before the entity's fuse goes off.
+     */
+    public float getFuse(final int index) {
+        return fuse[index];
+    }
+
+    public void setFuse(final int index, final float seconds) {
+        fuse[index] = seconds;
+    }
+
+    public void setAi(final int index, final AiState state, final float timeLeft,
+                      final float directionX, final float directionZ) {
+        aiState[index] = (byte) state.ordinal();
+        aiTimeLeft[index] = timeLeft;
+        aiDirection[index * 2] = directionX;
+        aiDirection[index * 2 + 1] = directionZ;
+    }
+
+    public AiState getAiState(final int index) {
+        return AiState.fromOrdinal(aiState[index]);
+    }
+
+    public float getAiTimeLeft(final int index) {
+        return aiTimeLeft[index];
+    }
+
+    public float getAiDirectionX(final int index) {
+        return aiDirection[index * 2];
+    }
+
+    public float getAiDirectionZ(final int index) {
+        return aiDirection[index * 2 + 1];
+    }
+
+    /**
+     * Makes room for exactly {@code size} entities, as read from a file.
+     */
+    void resize(final int size) {
+        allocate(Math.max(1, size));
+        count = size;
+    }
+
+    private void allocate(final int capacity) {
+        type = new byte[capacity];
+        location = new float[capacity * 3];
+        rotation = new float[capacity * 4];
+        linearVelocity = new float[capacity * 3];
+        angularVelocity = new float[capacity * 3];
+        health = new int[capacity];
+        fuse = new float[capacity];
+        aiState = new byte[capacity];
+        aiTimeLeft = new float[capacity];
+        aiDirection = new float[capacity * 2];
+    }
+
+    private void grow() {
+        final int capacity = type.length * 2;
+
+        type = Arrays.copyOf(type, capacity);
+        location = Arrays.copyOf(location, capacity * 3);
+        rotation = Arrays.copyOf(rotation, capacity * 4);
+        linearVelocity = Arrays.copyOf(linearVelocity, capacity * 3);
+        angularVelocity = Arrays.copyOf(angularVelocity, capacity * 3);
+        health = Arrays.copyOf(health, capacity);
+        fuse = Arrays.copyOf(fuse, capacity);
+        aiState = Arrays.copyOf(aiState, capacity);
+        aiTimeLeft = Arrays.copyOf(aiTimeLeft, capacity);
+        aiDirection = Arrays.copyOf(aiDirection, capacity * 2);
+    }
+}
@@ -0,0 +1,41 @@
+package nu.takacs.gametest.save;
+
+/**
+ * The kinds of gameplay entity, keyed by the {@code object_type} user data the
+ * factories put on their spatials.
+ */
+public enum EntityType {
+    GRENADE("grenade"),
+    BOX("box"),
+    NPC("npc");
+
+    private static final EntityType[] VALUES = values();
+
+    private final String objectType;
+
+    EntityType(final String objectType) {
+        this.objectType = objectType;
+    }
+
+    public String getObjectType() {
+        return objectType;
+    }
+
+    /**
+     * Returns the type for an {@code object_type} value, or {@code null} if it is not
+     * a gameplay entity.
+     */
+    public static EntityType fromObjectType(final String objectType) {
+        for (final var type : VALUES) {
+            if (type.objectType.equals(objectType)) {
+                return type;
+            }
+        }
+
+        return null;
+    }
+
+    public static EntityType fromOrdinal(final int ordinal) {
+        return VALUES[ordinal];
+    }
+}
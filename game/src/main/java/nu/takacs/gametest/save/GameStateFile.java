@@ -0,0 +1,147 @@
+package nu.takacs.gametest.save;
+
+import nu.takacs.gametest.ai.AiState;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary file format for {@link EntityStates}.
+ * <p>
+ * Little endian. A header of magic, version, entity count and player location is
+ * followed by each field as one packed array, in the order below. The byte-sized
+ * fields come last so every array starts aligned.
+ * <pre>
+ *   int   magic "GTST"
+ *   int   version
+ *   int   count
+ *   float playerX, playerY, playerZ
+ *   float location[3 * count]
+ *   float rotation[4 * count]
+ *   float linearVelocity[3 * count]
+ *   float angularVelocity[3 * count]
+ *   int   health[count]
+ *   float fuse[count]
+ *   float aiTimeLeft[count]
+ *   float aiDirection[2 * count]
+ *   byte  type[count]
+ *   byte  aiState[count]
+ * </pre>
+ * Reading maps the file and bulk-copies each array, so there is no per-entity
+ * parsing on either side.
+ */
+public final class GameStateFile {
+
+    public static final int MAGIC = 0x47545354;
+    public static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = 6 * Integer.BYTES;
+    // floats and ints per entity, then bytes per entity
+    private static final int WORDS_PER_ENTITY = 3 + 4 + 3 + 3 + 1 + 1 + 1 + 2;
+    private static final int BYTES_PER_ENTITY = 2;
+
+    private static final int ENTITY_TYPES = EntityType.values().length;
+    private static final int AI_STATES = AiState.values().length;
+
+    private GameStateFile() {}
+
+    public static int sizeOf(final EntityStates states) {
+        return HEADER_BYTES + states.size() * (WORDS_PER_ENTITY * Integer.BYTES + BYTES_PER_ENTITY);
+    }
+
+    public static void write(final EntityStates states, final OutputStream out) throws IOException {
+        final int count = states.size();
+        final var buffer = ByteBuffer.allocate(sizeOf(states)).order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(count);
+        buffer.putFloat(states.getPlayerLocation().x);
+        buffer.putFloat(states.getPlayerLocation().y);
+        buffer.putFloat(states.getPlayerLocation().z);
+
+        putFloats(buffer, states.location, count * 3);
+        putFloats(buffer, states.rotation, count * 4);
+        putFloats(buffer, states.linearVelocity, count * 3);
+        putFloats(buffer, states.angularVelocity, count * 3);
+        buffer.asIntBuffer().put(states.health, 0, count);
+        buffer.position(buffer.position() + count * Integer.BYTES);
+        putFloats(buffer, states.fuse, count);
+        putFloats(buffer, states.aiTimeLeft, count);
+        putFloats(buffer, states.aiDirection, count * 2);
+        buffer.put(states.type, 0, count);
+        buffer.put(states.aiState, 0, count);
+
+        out.write(buffer.array(), 0, buffer.position());
+    }
+
+    public static EntityStates read(final Path path) throws IOException {
+        try (final var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+
+            if (size < HEADER_BYTES) {
+                throw new IOException("Not a game state file: " + path);
+            }
+
+            final var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a game state file: " + path);
+            }
+
+            final int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported game state version " + version + " in " + path);
+            }
+
+            final int count = buffer.getInt();
+            final long expected = HEADER_BYTES
+                    + (long) count * (WORDS_PER_ENTITY * Integer.BYTES + BYTES_PER_ENTITY);
+
+            if (count < 0 || size < expected) {
+                throw new IOException("Truncated game state file: " + path);
+            }
+
+            final var states = new EntityStates();
+            states.resize(count);
+            states.getPlayerLocation().set(buffer.getFloat(), buffer.getFloat(), buffer.getFloat());
+
+            getFloats(buffer, states.location, count * 3);
+            getFloats(buffer, states.rotation, count * 4);
+            getFloats(buffer, states.linearVelocity, count * 3);
+            getFloats(buffer, states.angularVelocity, count * 3);
+            buffer.asIntBuffer().get(states.health, 0, count);
+            buffer.position(buffer.position() + count * Integer.BYTES);
+            getFloats(buffer, states.fuse, count);
+            getFloats(buffer, states.aiTimeLeft, count);
+            getFloats(buffer, states.aiDirection, count * 2);
+            buffer.get(states.type, 0, count);
+            buffer.get(states.aiState, 0, count);
+
+            for (int i = 0; i < count; ++i) {
+                if (states.type[i] < 0 || states.type[i] >= ENTITY_TYPES
+                        || states.aiState[i] < 0 || states.aiState[i] >= AI_STATES) {
+                    throw new IOException("Corrupt entity " + i + " in " + path);
+                }
+            }
+
+            return states;
+        }
+    }
+
+    private static void putFloats(final ByteBuffer buffer, final float[] values, final int length) {
+        buffer.asFloatBuffer().put(values, 0, length);
+        buffer.position(buffer.position() + length * Float.BYTES);
+    }
+
+    private static void getFloats(final ByteBuffer buffer, final float[] values, final int length) {
+        buffer.asFloatBuffer().get(values, 0, length);
+        buffer.position(buffer.position() + length * Float.BYTES);
+    }
+}
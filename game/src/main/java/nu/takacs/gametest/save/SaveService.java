@@ -0,0 +1,199 @@
+package nu.takacs.gametest.save;
+
+import com.jme3.app.Application;
+import nu.takacs.gametest.jfr.SaveEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes saves on a background thread.
+ * <p>
+ * The caller takes whatever snapshot it needs on the render thread and hands over a
+ * {@link SaveWriter} that only touches that snapshot. The writer streams into a temp
+ * file next to the target, which is synced and then renamed over the target, so a
+ * crash half way through never leaves a truncated save behind. Listener callbacks are
+ * enqueued back onto the render thread.
+ */
+public class SaveService {
+    private static final Logger LOG = LoggerFactory.getLogger(SaveService.class);
+
+    private static final long PROGRESS_INTERVAL_BYTES = 1024L * 1024L;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public interface SaveWriter {
+        void write(OutputStream out) throws IOException;
+    }
+
+    public interface SaveListener {
+        default void onProgress(final long bytesWritten) {}
+
+        void onCompleted(Path target, long bytesWritten, long millis);
+
+        void onFailed(Path target, IOException e);
+    }
+
+    private final Application application;
+    private final AtomicBoolean saving = new AtomicBoolean(false);
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        final var thread = new Thread(runnable, "save-io");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    public SaveService(final Application application) {
+        this.application = application;
+    }
+
+    /**
+     * Starts writing a save in the background, gzip-compressed if {@code compress} is set.
+     * Returns {@code false} without doing anything if the previous save is still being written.
+     */
+    public boolean save(final Path target,
+                        final boolean compress,
+                        final SaveWriter writer,
+                        final SaveListener listener) {
+        if (!saving.compareAndSet(false, true)) {
+            return false;
+        }
+
+        executor.execute(() -> {
+            final long start = System.nanoTime();
+            final var event = new SaveEvent();
+            event.begin();
+
+            try {
+                final long bytes = writeAtomically(target, compress, writer, listener);
+                final long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+                event.bytesWritten = bytes;
+                event.succeeded = true;
+
+                LOG.info("Saved {} ({} bytes) in {} ms", target, bytes, millis);
+                application.enqueue(() -> listener.onCompleted(target, bytes, millis));
+            } catch (final IOException | RuntimeException e) {
+                LOG.error("Failed to save {}", target, e);
+
+                final var failure = e instanceof IOException ? (IOException) e : new IOException(e);
+                application.enqueue(() -> listener.onFailed(target, failure));
+            } finally {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.path = target.toString();
+                    event.compressed = compress;
+                    event.commit();
+                }
+
+                saving.set(false);
+            }
+        });
+
+        return true;
+    }
+
+    public boolean isSaving() {
+        return saving.get();
+    }
+
+    /**
+     * Lets a save that is in flight finish, then stops the worker.
+     */
+    public void shutdown() {
+        executor.shutdown();
+
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                LOG.warn("Gave up waiting for the save to finish");
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private long writeAtomically(final Path target,
+                                 final boolean compress,
+                                 final SaveWriter writer,
+                                 final SaveListener listener) throws IOException {
+        final Path directory = target.toAbsolutePath().getParent();
+        final Path temp = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+
+        try {
+            final var file = new FileOutputStream(temp.toFile());
+            final var counter = new CountingOutputStream(file, listener);
+
+            // closing the outermost stream finishes the compression and closes the rest in turn
+            try (file; counter;
+                 final OutputStream buffered = new BufferedOutputStream(counter, BUFFER_SIZE);
+                 final OutputStream out = compress
+                         ? new GZIPOutputStream(buffered, BUFFER_SIZE)
+                         : buffered) {
+                writer.write(out);
+            }
+
+            try (final var channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            return counter.count;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private final class CountingOutputStream extends FilterOutputStream {
+        private final SaveListener listener;
+        private long count = 0;
+        private long nextReport = PROGRESS_INTERVAL_BYTES;
+
+        private CountingOutputStream(final OutputStream out, final SaveListener listener) {
+            super(out);
+            this.listener = listener;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            out.write(b);
+            advance(1);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            out.write(b, off, len);
+            advance(len);
+        }
+
+        private void advance(final int bytes) {
+            count += bytes;
+
+            if (count >= nextReport) {
+                nextReport = count + PROGRESS_INTERVAL_BYTES;
+
+                final long written = count;
+                application.enqueue(() -> listener.onProgress(written));
+            }
+        }
+    }
+}
@@ -0,0 +1,367 @@
+package nu.takacs.gametest.save;
+
+import com.jme3.anim.SkinningControl;
+import com.jme3.effect.ParticleEmitter;
+import com.jme3.light.Light;
+import com.jme3.material.Material;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.queue.RenderQueue;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.instancing.InstancedGeometry;
+import com.jme3.util.BufferUtils;
+import nu.takacs.gametest.particle.FireParticleState;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * A copy of a scene graph that can be exported off the render thread.
+ * <p>
+ * Taking it is split in two. {@link #capture} runs on the render thread and only
+ * records, in flat arrays, each spatial's parent, name, transform, hints, user data,
+ * lights and material, and for geometries their vertex buffers, as views that share
+ * the data but not the live buffers' positions. {@link #build} then puts the scene
+ * back together on the save thread, with its own copy of every buffer, so the exporter
+ * never touches anything the renderer uses.
+ * <p>
+ * Buffers are captured by reference, which is only safe for data the render thread
+ * doesn't write to once it is set. Terrain LOD swaps in new index buffers rather than
+ * rewriting them, so it qualifies. Meshes skinned on the CPU are rewritten every frame
+ * and are deep copied during the capture instead. Particle emitters and the fire
+ * particles are left out.
+ * <p>
+ * Instanced batches are left out too, their instances are copied as plain geometries
+ * instead, with a non-instanced copy of each material.
+ * <p>
+ * Controls are not copied either. Cloning them would register the copies with the
+ * physics space, the AI system and the timers as if they were live entities.
+ */
+public final class SceneSnapshot {
+
+    private static final int INITIAL_CAPACITY = 256;
+    // translation, rotation and scale
+    private static final int TRANSFORM_FLOATS = 10;
+    private static final Object[] NO_USER_DATA = new Object[0];
+
+    private int count = 0;
+    private int[] parent = new int[INITIAL_CAPACITY];
+    private String[] name = new String[INITIAL_CAPACITY];
+    private float[] transform = new float[INITIAL_CAPACITY * TRANSFORM_FLOATS];
+    private Spatial.CullHint[] cullHint = new Spatial.CullHint[INITIAL_CAPACITY];
+    private RenderQueue.Bucket[] bucket = new RenderQueue.Bucket[INITIAL_CAPACITY];
+    private RenderQueue.ShadowMode[] shadowMode = new RenderQueue.ShadowMode[INITIAL_CAPACITY];
+    // user data keys and values, interleaved
+    private Object[][] userData = new Object[INITIAL_CAPACITY][];
+    private Light[][] lights = new Light[INITIAL_CAPACITY][];
+    // null for nodes
+    private Material[] material = new Material[INITIAL_CAPACITY];
+    private MeshCapture[] mesh = new MeshCapture[INITIAL_CAPACITY];
+
+    private SceneSnapshot() {}
+
+    /**
+     * Records the scene under {@code root}. Call it on the render thread.
+     */
+    public static SceneSnapshot capture(final Node root) {
+        final var snapshot = new SceneSnapshot();
+        snapshot.capture(root, -1, false);
+        return snapshot;
+    }
+
+    /**
+     * Puts the recorded scene back together, copying the mesh data. Call it once, on
+     * any thread.
+     */
+    public Node build() {
+        final Spatial[] built = new Spatial[count];
+        final Map<Material, Material> plainMaterials = new IdentityHashMap<>();
+        final var translation = new Vector3f();
+        final var rotation = new Quaternion();
+        final var scale = new Vector3f();
+
+        for (int i = 0; i < count; ++i) {
+            final Spatial spatial;
+
+            if (mesh[i] == null) {
+                spatial = new Node(name[i]);
+            } else {
+                final var geometry = new Geometry(name[i], mesh[i].build());
+                geometry.setMaterial(plainMaterial(material[i], plainMaterials));
+                spatial = geometry;
+            }
+
+            final int t = i * TRANSFORM_FLOATS;
+            translation.set(transform[t], transform[t + 1], transform[t + 2]);
+            rotation.set(transform[t + 3], transform[t + 4], transform[t + 5], transform[t + 6]);
+            scale.set(transform[t + 7], transform[t + 8], transform[t + 9]);
+
+            spatial.setLocalTranslation(translation);
+            spatial.setLocalRotation(rotation);
+            spatial.setLocalScale(scale);
+            spatial.setCullHint(cullHint[i]);
+            spatial.setQueueBucket(bucket[i]);
+            spatial.setShadowMode(shadowMode[i]);
+
+            final var data = userData[i];
+            for (int d = 0; d < data.length; d += 2) {
+                spatial.setUserData((String) data[d], data[d + 1]);
+            }
+
+            for (final var light : lights[i]) {
+                spatial.addLight(light);
+            }
+
+            if (parent[i] != -1) {
+                ((Node) built[parent[i]]).attachChild(spatial);
+            }
+
+            built[i] = spatial;
+        }
+
+        return (Node) built[0];
+    }
+
+    private void capture(final Spatial spatial, final int parentIndex, final boolean parentSkinnedOnCpu) {
+        if (spatial instanceof ParticleEmitter || spatial instanceof InstancedGeometry
+                || FireParticleState.GEOMETRY_NAME.equals(spatial.getName())
+                || !(spatial instanceof Node || spatial instanceof Geometry)) {
+            return;
+        }
+
+        final var skinning = spatial.getControl(SkinningControl.class);
+        final boolean skinnedOnCpu = parentSkinnedOnCpu
+                || (skinning != null && !skinning.isHardwareSkinningUsed());
+
+        if (count == parent.length) {
+            grow();
+        }
+
+        final int index = count++;
+
+        parent[index] = parentIndex;
+        name[index] = spatial.getName();
+
+        final var translation = spatial.getLocalTranslation();
+        final var rotation = spatial.getLocalRotation();
+        final var scale = spatial.getLocalScale();
+        final int t = index * TRANSFORM_FLOATS;
+
+        transform[t] = translation.x;
+        transform[t + 1] = translation.y;
+        transform[t + 2] = translation.z;
+        transform[t + 3] = rotation.getX();
+        transform[t + 4] = rotation.getY();
+        transform[t + 5] = rotation.getZ();
+        transform[t + 6] = rotation.getW();
+        transform[t + 7] = scale.x;
+        transform[t + 8] = scale.y;
+        transform[t + 9] = scale.z;
+
+        cullHint[index] = spatial.getLocalCullHint();
+        bucket[index] = spatial.getLocalQueueBucket();
+        shadowMode[index] = spatial.getLocalShadowMode();
+        userData[index] = userDataOf(spatial);
+
+        final var lightList = spatial.getLocalLightList();
+        final Light[] spatialLights = new Light[lightList.size()];
+        for (int l = 0; l < spatialLights.length; ++l) {
+            spatialLights[l] = lightList.get(l);
+        }
+        lights[index] = spatialLights;
+
+        if (spatial instanceof Geometry) {
+            final var geometry = (Geometry) spatial;
+
+            material[index] = geometry.getMaterial();
+            mesh[index] = new MeshCapture(geometry.getMesh(), skinnedOnCpu);
+            return;
+        }
+
+        material[index] = null;
+        mesh[index] = null;
+
+        for (final var child : ((Node) spatial).getChildren()) {
+            capture(child, index, skinnedOnCpu);
+        }
+    }
+
+    private static Object[] userDataOf(final Spatial spatial) {
+        final var keys = spatial.getUserDataKeys();
+
+        if (keys.isEmpty()) {
+            return NO_USER_DATA;
+        }
+
+        final Object[] data = new Object[keys.size() * 2];
+        int d = 0;
+
+        for (final var key : keys) {
+            data[d++] = key;
+            data[d++] = spatial.getUserData(key);
+        }
+
+        return data;
+    }
+
+    private static Material plainMaterial(final Material material,
+                                          final Map<Material, Material> plainMaterials) {
+        final var instancing = material.getParam("UseInstancing");
+
+        if (instancing == null || !Boolean.TRUE.equals(instancing.getValue())) {
+            return material;
+        }
+
+        return plainMaterials.computeIfAbsent(material, m -> {
+            final var copy = m.clone();
+            copy.setBoolean("UseInstancing", false);
+            return copy;
+        });
+    }
+
+    /**
+     * Returns a buffer of its own with the data in the view from its position to its limit.
+     */
+    private static Buffer copyOf(final Buffer view) {
+        final Buffer copy;
+
+        if (view instanceof FloatBuffer) {
+            copy = BufferUtils.createFloatBuffer(view.remaining()).put((FloatBuffer) view);
+        } else if (view instanceof IntBuffer) {
+            copy = BufferUtils.createIntBuffer(view.remaining()).put((IntBuffer) view);
+        } else if (view instanceof ShortBuffer) {
+            copy = BufferUtils.createShortBuffer(view.remaining()).put((ShortBuffer) view);
+        } else if (view instanceof ByteBuffer) {
+            copy = BufferUtils.createByteBuffer(view.remaining()).put((ByteBuffer) view);
+        } else if (view instanceof DoubleBuffer) {
+            copy = BufferUtils.createDoubleBuffer(view.remaining()).put((DoubleBuffer) view);
+        } else {
+            throw new IllegalArgumentException("Unsupported buffer " + view.getClass());
+        }
+
+        return copy.flip();
+    }
+
+    private void grow() {
+        final int capacity = parent.length * 2;
+
+        parent = Arrays.copyOf(parent, capacity);
+        name = Arrays.copyOf(name, capacity);
+        transform = Arrays.copyOf(transform, capacity * TRANSFORM_FLOATS);
+        cullHint = Arrays.copyOf(cullHint, capacity);
+        bucket = Arrays.copyOf(bucket, capacity);
+        shadowMode = Arrays.copyOf(shadowMode, capacity);
+        userData = Arrays.copyOf(userData, capacity);
+        lights = Arrays.copyOf(lights, capacity);
+        material = Arrays.copyOf(material, capacity);
+        mesh = Arrays.copyOf(mesh, capacity);
+    }
+
+    /**
+     * A mesh's vertex buffers and LOD levels as of the capture, each with a view of its
+     * data, or a deep copy of a mesh the CPU skins.
+     */
+    private static final class MeshCapture {
+        private final Mesh.Mode mode;
+        private final int maxNumWeights;
+        private final VertexBuffer[] buffers;
+        private final Buffer[] views;
+        private final VertexBuffer[] lodLevels;
+        private final Buffer[] lodViews;
+        private final Mesh skinned;
+
+        private MeshCapture(final Mesh mesh, final boolean skinnedOnCpu) {
+            mode = mesh.getMode();
+            maxNumWeights = mesh.getMaxNumWeights();
+
+            if (skinnedOnCpu) {
+                buffers = null;
+                views = null;
+                lodLevels = null;
+                lodViews = null;
+                skinned = mesh.deepClone();
+                return;
+            }
+
+            final var bufferList = mesh.getBufferList();
+            buffers = new VertexBuffer[bufferList.size()];
+            views = new Buffer[buffers.length];
+
+            for (int b = 0; b < buffers.length; ++b) {
+                buffers[b] = bufferList.get(b);
+                views[b] = viewOf(buffers[b]);
+            }
+
+            final int lodCount = mesh.getNumLodLevels();
+            lodLevels = new VertexBuffer[lodCount];
+            lodViews = new Buffer[lodCount];
+
+            for (int l = 0; l < lodCount; ++l) {
+                lodLevels[l] = mesh.getLodLevel(l);
+                lodViews[l] = viewOf(lodLevels[l]);
+            }
+
+            skinned = null;
+        }
+
+        private static Buffer viewOf(final VertexBuffer buffer) {
+            final var data = buffer.getData();
+            return data == null ? null : data.duplicate().rewind();
+        }
+
+        private Mesh build() {
+            if (skinned != null) {
+                return skinned;
+            }
+
+            final var copy = new Mesh();
+            copy.setMode(mode);
+            copy.setMaxNumWeights(maxNumWeights);
+
+            for (int b = 0; b < buffers.length; ++b) {
+                if (views[b] != null) {
+                    copy.setBuffer(copyOf(buffers[b], views[b]));
+                }
+            }
+
+            if (lodLevels.length > 0) {
+                final VertexBuffer[] lods = new VertexBuffer[lodLevels.length];
+
+                for (int l = 0; l < lods.length; ++l) {
+                    lods[l] = copyOf(lodLevels[l], lodViews[l]);
+                }
+
+                copy.setLodLevels(lods);
+            }
+
+            copy.updateCounts();
+            copy.updateBound();
+
+            return copy;
+        }
+
+        private static VertexBuffer copyOf(final VertexBuffer buffer, final Buffer view) {
+            final var copy = new VertexBuffer(buffer.getBufferType());
+
+            copy.setupData(buffer.getUsage(), buffer.getNumComponents(), buffer.getFormat(),
+                    SceneSnapshot.copyOf(view));
+            copy.setNormalized(buffer.isNormalized());
+            copy.setOffset(buffer.getOffset());
+            copy.setStride(buffer.getStride());
+            copy.setInstanceSpan(buffer.getInstanceSpan());
+
+            return copy;
+        }
+    }
+}
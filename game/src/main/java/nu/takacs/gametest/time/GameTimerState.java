@@ -0,0 +1,77 @@
+package nu.takacs.gametest.time;
+
+import com.jme3.app.Application;
+import com.jme3.app.state.BaseAppState;
+
+/**
+ * Game-time clock and timers. Time only moves forward by the scaled frame time
+ * while the state is enabled and not paused, so timers stop with the game and a
+ * run fed with the same frame times fires the same timers in the same order.
+ */
+public class GameTimerState extends BaseAppState {
+
+    private static final float TICK_SECONDS = 0.01f;
+
+    private final TimerWheel wheel = new TimerWheel(TICK_SECONDS);
+
+    private float timeScale = 1.0f;
+    private boolean paused = false;
+
+    public TimerWheel.Timeout schedule(final float delaySeconds, final Runnable task) {
+        return wheel.schedule(delaySeconds, task);
+    }
+
+    public TimerWheel.Timeout scheduleMillis(final long delayMillis, final Runnable task) {
+        return wheel.schedule(delayMillis / 1000.0f, task);
+    }
+
+    /**
+     * Game time in seconds, i.e. the sum of all scaled frame times while running.
+     */
+    public double getTime() {
+        return wheel.getTime();
+    }
+
+    public int getPendingCount() {
+        return wheel.size();
+    }
+
+    public float getTimeScale() {
+        return timeScale;
+    }
+
+    public void setTimeScale(final float timeScale) {
+        if (timeScale < 0.0f) {
+            throw new IllegalArgumentException("Time scale can't be negative: " + timeScale);
+        }
+
+        this.timeScale = timeScale;
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    public void setPaused(final boolean paused) {
+        this.paused = paused;
+    }
+
+    @Override
+    public void update(final float tpf) {
+        if (!paused) {
+            wheel.advance(tpf * timeScale);
+        }
+    }
+
+    @Override
+    protected void initialize(final Application app) {}
+
+    @Override
+    protected void cleanup(final Application app) {}
+
+    @Override
+    protected void onEnable() {}
+
+    @Override
+    protected void onDisable() {}
+}
@@ -0,0 +1,217 @@
+package nu.takacs.gametest.time;
+
+/**
+ * Hierarchical timing wheel driven by whatever time it is {@link #advance advanced} by.
+ * <p>
+ * Time is cut into fixed ticks. Each level has 64 slots, and every slot of a level
+ * spans all 64 slots of the level below it, so four levels cover about 46 hours at
+ * the default 10 ms tick. Scheduling and cancelling are O(1). Advancing only touches
+ * the slot for each elapsed tick, plus the occasional cascade of a coarser slot into
+ * finer ones, so timers that are not due cost nothing.
+ * <p>
+ * Timers that fall due on the same tick fire in the order they were scheduled, so
+ * the same sequence of schedule and advance calls always fires the same timers in
+ * the same order.
+ */
+public class TimerWheel {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_DELAY_TICKS = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+    private final float tickSeconds;
+    private final Timeout[][] wheel = new Timeout[LEVELS][SLOTS];
+    private final Timeout firing = Timeout.sentinel();
+
+    private long currentTick = 0;
+    private float pending = 0.0f;
+    private int size = 0;
+
+    public TimerWheel(final float tickSeconds) {
+        if (tickSeconds <= 0.0f) {
+            throw new IllegalArgumentException("Tick must be positive: " + tickSeconds);
+        }
+
+        this.tickSeconds = tickSeconds;
+
+        for (int level = 0; level < LEVELS; ++level) {
+            for (int slot = 0; slot < SLOTS; ++slot) {
+                wheel[level][slot] = Timeout.sentinel();
+            }
+        }
+    }
+
+    /**
+     * Runs {@code task} once at least {@code delaySeconds} of wheel time have passed.
+     * Delays are rounded up to whole ticks, and every timer waits at least one tick.
+     */
+    public Timeout schedule(final float delaySeconds, final Runnable task) {
+        final long ticks = Math.min(MAX_DELAY_TICKS,
+                Math.max(1L, (long) Math.ceil((delaySeconds + pending) / tickSeconds)));
+
+        final var timeout = new Timeout(this, task, currentTick + ticks);
+        place(timeout);
+        ++size;
+
+        return timeout;
+    }
+
+    /**
+     * Moves time forward, firing every timer that falls due on the way.
+     */
+    public void advance(final float seconds) {
+        if (seconds <= 0.0f) {
+            return;
+        }
+
+        pending += seconds;
+
+        while (pending >= tickSeconds) {
+            pending -= tickSeconds;
+            tick();
+        }
+    }
+
+    /**
+     * Time passed since the wheel was created, in seconds.
+     */
+    public double getTime() {
+        return currentTick * (double) tickSeconds + pending;
+    }
+
+    public float getTickSeconds() {
+        return tickSeconds;
+    }
+
+    /**
+     * Number of timers that are scheduled and have not fired or been cancelled yet.
+     */
+    public int size() {
+        return size;
+    }
+
+    private void tick() {
+        ++currentTick;
+
+        // pull timers down from coarser levels whose slot for this tick has come up
+        for (int level = 1; level < LEVELS; ++level) {
+            if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0) {
+                break;
+            }
+
+            final var slot = wheel[level][(int) (currentTick >>> (SLOT_BITS * level)) & SLOT_MASK];
+            while (slot.next != slot) {
+                final var timeout = slot.next;
+                timeout.unlink();
+                place(timeout);
+            }
+        }
+
+        final var due = wheel[0][(int) currentTick & SLOT_MASK];
+        if (due.next == due) {
+            return;
+        }
+
+        firing.spliceFrom(due);
+
+        while (firing.next != firing) {
+            final var timeout = firing.next;
+            timeout.unlink();
+            timeout.wheel = null;
+            --size;
+
+            timeout.task.run();
+        }
+    }
+
+    private void place(final Timeout timeout) {
+        final long delta = timeout.dueTick - currentTick;
+
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (SLOT_BITS * (level + 1)))) {
+            ++level;
+        }
+
+        timeout.linkBefore(wheel[level][(int) (timeout.dueTick >>> (SLOT_BITS * level)) & SLOT_MASK]);
+    }
+
+    /**
+     * Handle to a scheduled task.
+     */
+    public static final class Timeout {
+        private TimerWheel wheel;
+        private final Runnable task;
+        private final long dueTick;
+
+        private Timeout prev = this;
+        private Timeout next = this;
+
+        private Timeout(final TimerWheel wheel, final Runnable task, final long dueTick) {
+            this.wheel = wheel;
+            this.task = task;
+            this.dueTick = dueTick;
+        }
+
+        private static Timeout sentinel() {
+            return new Timeout(null, null, -1);
+        }
+
+        /**
+         * Stops the task from running. Does nothing if it already ran or was cancelled.
+         */
+        public void cancel() {
+            if (wheel == null) {
+                return;
+            }
+
+            unlink();
+            --wheel.size;
+            wheel = null;
+        }
+
+        public boolean isPending() {
+            return wheel != null;
+        }
+
+        /**
+         * Wheel time left until the task runs, in seconds; zero once it ran or was cancelled.
+         */
+        public float getRemainingSeconds() {
+            if (wheel == null) {
+                return 0.0f;
+            }
+
+            return Math.max(0.0f, (dueTick - wheel.currentTick) * wheel.tickSeconds - wheel.pending);
+        }
+
+        private void linkBefore(final Timeout sentinel) {
+            prev = sentinel.prev;
+            next = sentinel;
+            sentinel.prev.next = this;
+            sentinel.prev = this;
+        }
+
+        private void unlink() {
+            prev.next = next;
+            next.prev = prev;
+            prev = this;
+            next = this;
+        }
+
+        private void spliceFrom(final Timeout source) {
+            // append everything in source to the end of this (empty) list
+            final var first = source.next;
+            final var last = source.prev;
+
+            prev.next = first;
+            first.prev = prev;
+            last.next = this;
+            prev = last;
+
+            source.next = source;
+            source.prev = source;
+        }
+    }
+}
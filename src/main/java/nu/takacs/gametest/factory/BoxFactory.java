@@ -1,57 +0,0 @@
-package nu.takacs.gametest.factory;
-
-import com.jme3.app.LegacyApplication;
-import com.jme3.material.Material;
-import com.jme3.math.ColorRGBA;
-import com.jme3.math.Vector3f;
-import com.jme3.scene.Geometry;
-import com.jme3.scene.Node;
-import com.jme3.scene.Spatial;
-import com.jme3.scene.shape.Box;
-import nu.takacs.gametest.control.HealthColorControl;
-import nu.takacs.gametest.control.HealthDestructionControl;
-
-import java.util.function.Consumer;
-
-public class BoxFactory {
-    private final Material boxMaterial;
-    private final LegacyApplication application;
-    private final FireFactory fireFactory;
-
-    public BoxFactory(final LegacyApplication application,
-                      final FireFactory fireFactory) {
-        this.application = application;
-
-        this.boxMaterial = new Material(application.getAssetManager(),
-                "Common/MatDefs/Light/Lighting.j3md");
-        this.fireFactory = fireFactory;
-
-        this.boxMaterial.setBoolean("UseMaterialColors",true);
-        this.boxMaterial.setColor("Ambient", ColorRGBA.Green);
-        this.boxMaterial.setColor("Diffuse", ColorRGBA.Green);
-
-    }
-
-    public Spatial createBox(final Consumer<Spatial> onKilled) {
-        final var fire = fireFactory.createFire(Vector3f.ZERO);
-        final var node = new Node("BoxNode");
-        final var box = new Geometry("BoxGeometry", new Box(1.0f, 1.0f, 1.0f));
-
-        box.setMaterial(boxMaterial);
-
-        node.setUserData("object_type", "box");
-
-        node.attachChild(box);
-        node.attachChild(fire);
-
-        final var healthColorControl = new HealthColorControl(application);
-
-        box.addControl(healthColorControl);
-
-        final var healthDestructionControl = new HealthDestructionControl(onKilled);
-
-        node.addControl(healthDestructionControl);
-
-        return node;
-    }
-}